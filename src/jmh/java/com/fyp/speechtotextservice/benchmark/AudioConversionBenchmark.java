@@ -0,0 +1,80 @@
+package com.fyp.speechtotextservice.benchmark;
+
+import com.fyp.speechtotextservice.live.AudioInputConverter;
+import com.fyp.speechtotextservice.live.AudioInputFormat;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Server-side downmixing and resampling of one live stream, a browser-sized chunk at a time.
+ * The score is CPU time per chunk; divided by chunkMillis it is the share of a core one stream
+ * costs, e.g. 10 us per 20 ms chunk is 0.05%.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class AudioConversionBenchmark {
+
+    // sampleRate:channels:encoding, as declared on the /audio-stream handshake
+    @Param({"48000:2:float32", "48000:1:float32", "44100:2:pcm16", "16000:2:pcm16", "8000:1:pcm16"})
+    String input;
+
+    @Param({"20", "100"})
+    int chunkMillis;
+
+    private AudioInputConverter converter;
+    private ByteBuffer chunk;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        String[] parts = input.split(":");
+        AudioInputFormat format = new AudioInputFormat(Integer.parseInt(parts[0]), Integer.parseInt(parts[1]),
+                AudioInputFormat.Encoding.valueOf(parts[2].toUpperCase(Locale.ROOT)));
+        converter = new AudioInputConverter(format, PcmChunks.SAMPLE_RATE);
+        chunk = chunk(format, chunkMillis);
+    }
+
+    @Benchmark
+    public ByteBuffer convert() {
+        return converter.convert(chunk.rewind());
+    }
+
+    /**
+     * A tone with a little noise on every channel, in the declared encoding.
+     */
+    private static ByteBuffer chunk(AudioInputFormat format, int millis) {
+        int frames = format.sampleRate() * millis / 1000;
+        ByteBuffer chunk = ByteBuffer.allocate(frames * format.frameBytes()).order(ByteOrder.LITTLE_ENDIAN);
+        Random random = new Random(millis);
+        for (int i = 0; i < frames; i++) {
+            double sample = 0.1 * Math.sin(2 * Math.PI * 220 * i / format.sampleRate()) + random.nextGaussian() * 0.003;
+            for (int channel = 0; channel < format.channels(); channel++) {
+                if (format.encoding() == AudioInputFormat.Encoding.FLOAT32) {
+                    chunk.putFloat((float) sample);
+                } else {
+                    chunk.putShort((short) (sample * Short.MAX_VALUE));
+                }
+            }
+        }
+        return chunk.flip();
+    }
+}
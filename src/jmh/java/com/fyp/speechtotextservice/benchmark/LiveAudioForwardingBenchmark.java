@@ -0,0 +1,114 @@
+package com.fyp.speechtotextservice.benchmark;
+
+import com.fyp.speechtotextservice.admission.AdmissionController;
+import com.fyp.speechtotextservice.live.AudioFramePool;
+import com.fyp.speechtotextservice.live.AudioOverflowPolicy;
+import com.fyp.speechtotextservice.live.EnergyVoiceActivityDetector;
+import com.fyp.speechtotextservice.live.LiveSessionRegistry;
+import com.fyp.speechtotextservice.live.TranscriptFormat;
+import com.fyp.speechtotextservice.live.VoiceActivityDetector;
+import com.fyp.speechtotextservice.metrics.TranscriptLogSampler;
+import com.fyp.speechtotextservice.realtime.RealtimeUpstream;
+import com.fyp.speechtotextservice.realtime.RealtimeUpstreamPool;
+import com.fyp.speechtotextservice.service.LiveSpeechToTextService;
+import com.fyp.speechtotextservice.websocket.AudioWebSocketHandler;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.CloseStatus;
+
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Audio from a live client through {@link AudioWebSocketHandler} into the session's frame
+ * buffer, with the session's upload thread draining it into an upstream that discards frames.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LiveAudioForwardingBenchmark {
+
+    @Param({"20", "50", "100", "250"})
+    int chunkMillis;
+
+    @Param({"true", "false"})
+    boolean vad;
+
+    private final AtomicLong upstreamBytes = new AtomicLong();
+    private AudioWebSocketHandler handler;
+    private BenchmarkWebSocketSession session;
+    private byte[] chunk;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        AudioFramePool framePool = new AudioFramePool(meterRegistry, PcmChunks.SAMPLE_RATE, Duration.ofMillis(100), 2048);
+        DefaultListableBeanFactory beans = new DefaultListableBeanFactory();
+        beans.registerSingleton("voiceActivityDetector", new EnergyVoiceActivityDetector(-50, 10, 0.25,
+                PcmChunks.SAMPLE_RATE, Duration.ofSeconds(5)));
+        LiveSessionRegistry registry = new LiveSessionRegistry(meterRegistry, framePool, 1, 256, 10,
+                TranscriptFormat.TEXT, 50, AudioOverflowPolicy.DROP_OLDEST, Duration.ofSeconds(2),
+                beans.getBeanProvider(VoiceActivityDetector.class), vad,
+                Duration.ofMillis(300), Duration.ofMillis(500), Duration.ofSeconds(5));
+        RealtimeUpstreamPool upstreamPool = new RealtimeUpstreamPool(
+                (sampleRate, listener) -> new DiscardingUpstream(upstreamBytes), meterRegistry,
+                PcmChunks.SAMPLE_RATE, 0, Duration.ofMinutes(1), Duration.ofSeconds(5));
+        AdmissionController admission = new AdmissionController(meterRegistry, 16, 0, 100, 100, 1, 1, 100, 100, 16,
+                Duration.ofSeconds(1), List.of());
+        LiveSpeechToTextService service = new LiveSpeechToTextService(registry, upstreamPool,
+                new TranscriptLogSampler(0), admission);
+
+        handler = new AudioWebSocketHandler(service, PcmChunks.SAMPLE_RATE);
+        session = new BenchmarkWebSocketSession("benchmark");
+        handler.afterConnectionEstablished(session);
+        chunk = PcmChunks.chunk(chunkMillis);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        handler.afterConnectionClosed(session, CloseStatus.NORMAL);
+    }
+
+    @Benchmark
+    public long forward() throws Exception {
+        // A fresh message per call, as the container creates for every frame it receives
+        handler.handleMessage(session, new BinaryMessage(ByteBuffer.wrap(chunk)));
+        return upstreamBytes.get();
+    }
+
+    private record DiscardingUpstream(AtomicLong bytes) implements RealtimeUpstream {
+
+        @Override
+        public void connect() {
+        }
+
+        @Override
+        public void sendAudio(byte[] frame, int length) {
+            bytes.addAndGet(length);
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package com.fyp.speechtotextservice.benchmark;
+
+import java.util.Random;
+
+/**
+ * 16 kHz PCM16 mono test audio, as live clients send it.
+ */
+final class PcmChunks {
+
+    static final int SAMPLE_RATE = 16000;
+    static final int BYTES_PER_MILLI = SAMPLE_RATE * 2 / 1000;
+
+    private PcmChunks() {
+    }
+
+    /**
+     * A chunk of low-level noise with a tone on top, so it is neither silent nor compressible.
+     */
+    static byte[] chunk(int millis) {
+        byte[] chunk = new byte[millis * BYTES_PER_MILLI];
+        Random random = new Random(millis);
+        for (int i = 0; i + 1 < chunk.length; i += 2) {
+            int sample = (int) (3000 * Math.sin(2 * Math.PI * 220 * (i / 2) / SAMPLE_RATE)) + random.nextInt(200) - 100;
+            chunk[i] = (byte) sample;
+            chunk[i + 1] = (byte) (sample >> 8);
+        }
+        return chunk;
+    }
+}
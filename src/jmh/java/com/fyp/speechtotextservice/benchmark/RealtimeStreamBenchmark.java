@@ -0,0 +1,94 @@
+package com.fyp.speechtotextservice.benchmark;
+
+import com.fyp.speechtotextservice.config.AssemblyAIConfig;
+import com.fyp.speechtotextservice.config.AssemblyAIWebSocketClient;
+import com.fyp.speechtotextservice.realtime.RealtimeEvent;
+import com.fyp.speechtotextservice.realtime.RealtimeUpstream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketHandler;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The raw realtime transport: encoding outgoing audio frames and parsing incoming transcript
+ * messages, on one stream of {@link AssemblyAIWebSocketClient} attached to an in-memory session.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class RealtimeStreamBenchmark {
+
+    @Param({"20", "50", "100", "250"})
+    int chunkMillis;
+
+    @Param({"binary", "base64"})
+    String audioFrames;
+
+    private RealtimeUpstream stream;
+    private BenchmarkWebSocketSession session;
+    private byte[] chunk;
+    private TextMessage partial;
+    private TextMessage finalTranscript;
+    private RealtimeEvent lastEvent;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        AssemblyAIWebSocketClient client = new AssemblyAIWebSocketClient(new AssemblyAIConfig(), audioFrames);
+        stream = client.create(PcmChunks.SAMPLE_RATE, event -> lastEvent = event);
+        session = new BenchmarkWebSocketSession("upstream");
+        ((WebSocketHandler) stream).afterConnectionEstablished(session);
+        chunk = PcmChunks.chunk(chunkMillis);
+        partial = new TextMessage(transcriptMessage("PartialTranscript", 6));
+        finalTranscript = new TextMessage(transcriptMessage("FinalTranscript", 24));
+    }
+
+    @Benchmark
+    public long sendAudio() {
+        stream.sendAudio(chunk, chunk.length);
+        return session.sentBytes();
+    }
+
+    @Benchmark
+    public RealtimeEvent parsePartial() throws Exception {
+        ((WebSocketHandler) stream).handleMessage(session, partial);
+        return lastEvent;
+    }
+
+    @Benchmark
+    public RealtimeEvent parseFinal() throws Exception {
+        ((WebSocketHandler) stream).handleMessage(session, finalTranscript);
+        return lastEvent;
+    }
+
+    // Shaped like the service's messages: one entry per word with timings and confidence
+    private static String transcriptMessage(String type, int wordCount) {
+        StringBuilder text = new StringBuilder();
+        StringBuilder words = new StringBuilder();
+        for (int i = 0; i < wordCount; i++) {
+            String word = "word" + i;
+            text.append(i == 0 ? "" : " ").append(word);
+            words.append(i == 0 ? "" : ",")
+                    .append("{\"start\":").append(i * 400L)
+                    .append(",\"end\":").append(i * 400L + 350)
+                    .append(",\"confidence\":0.93,\"text\":\"").append(word).append("\"}");
+        }
+        return "{\"message_type\":\"" + type + "\",\"created\":\"2024-05-01T10:00:00.000000\""
+                + ",\"audio_start\":0,\"audio_end\":" + wordCount * 400L
+                + ",\"confidence\":0.93,\"text\":\"" + text + "\",\"words\":[" + words + "]}";
+    }
+}
@@ -0,0 +1,61 @@
+package com.fyp.speechtotextservice.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fyp.speechtotextservice.dto.TranscriptionResponse;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JSON serialization of the transcript response, for transcripts of a few seconds up to an hour
+ * of speech.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class TranscriptionResponseBenchmark {
+
+    // Roughly 2.5 words per second of speech
+    @Param({"10", "600", "9000"})
+    int words;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private TranscriptionResponse response;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < words; i++) {
+            text.append(i == 0 ? "" : i % 12 == 0 ? ". " : " ").append(i % 7 == 0 ? "transcription" : "word");
+        }
+        response = new TranscriptionResponse();
+        response.setStatus("completed");
+        response.setText(text.toString());
+    }
+
+    @Benchmark
+    public byte[] toBytes() throws Exception {
+        return objectMapper.writeValueAsBytes(response);
+    }
+
+    // As the message converter does, straight into the response stream
+    @Benchmark
+    public void toStream() throws Exception {
+        objectMapper.writeValue(OutputStream.nullOutputStream(), response);
+    }
+}
@@ -0,0 +1,91 @@
+package com.fyp.speechtotextservice.benchmark;
+
+import com.fyp.speechtotextservice.media.AudioExtractor;
+import com.fyp.speechtotextservice.media.ExtractedAudio;
+import com.fyp.speechtotextservice.media.MediaSource;
+import com.fyp.speechtotextservice.service.StreamingUploadBody;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import okio.Buffer;
+import okio.BufferedSink;
+import okio.Okio;
+import okio.Sink;
+import okio.Timeout;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The copy from a multipart upload into the upload request body: the path
+ * {@code SpeechToTextService} takes for media that needs no demuxing, without the network.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class UploadCopyBenchmark {
+
+    // Whole uploads of 20 ms to 250 ms of audio, and a typical one-minute recording
+    @Param({"20", "250", "60000"})
+    int audioMillis;
+
+    private AudioExtractor audioExtractor;
+    private MediaSource upload;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        audioExtractor = new AudioExtractor(new SimpleMeterRegistry(), true, DataSize.ofMegabytes(16));
+        upload = MediaSource.of(new MockMultipartFile("videoFile", "audio.pcm", "application/octet-stream",
+                PcmChunks.chunk(audioMillis)));
+    }
+
+    @Benchmark
+    public long copy() throws IOException {
+        CountingSink counter = new CountingSink();
+        ExtractedAudio audio = audioExtractor.extract(upload);
+        try (InputStream in = audio.stream(); BufferedSink sink = Okio.buffer(counter)) {
+            new StreamingUploadBody(in, audio.length()).writeTo(sink);
+        }
+        return counter.bytes;
+    }
+
+    // Stands in for the socket: consumes what OkHttp would write
+    private static final class CountingSink implements Sink {
+        private long bytes;
+
+        @Override
+        public void write(Buffer source, long byteCount) throws IOException {
+            source.skip(byteCount);
+            bytes += byteCount;
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public Timeout timeout() {
+            return Timeout.NONE;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.fyp.speechtotextservice.loadtest;
+
+import jakarta.websocket.Endpoint;
+import jakarta.websocket.server.ServerContainer;
+import jakarta.websocket.server.ServerEndpointConfig;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.catalina.Context;
+import org.apache.catalina.LifecycleException;
+import org.apache.catalina.startup.Tomcat;
+import org.apache.tomcat.websocket.server.WsSci;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+/**
+ * Stand-in for AssemblyAI on an embedded Tomcat: the upload, transcript submit and poll REST
+ * calls, and the realtime WebSocket. Latency, jitter and error rates come from
+ * {@link FakeUpstreamSettings}; transcripts are synthetic.
+ */
+@Slf4j
+public class FakeAssemblyAI implements AutoCloseable {
+
+    private final Tomcat tomcat = new Tomcat();
+    private final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(4,
+            Thread.ofPlatform().name("fake-upstream-", 0).daemon().factory());
+
+    public FakeAssemblyAI(FakeUpstreamSettings settings, int port) throws IOException {
+        Path baseDir = Files.createTempDirectory("fake-assemblyai");
+        tomcat.setBaseDir(baseDir.toString());
+        tomcat.setPort(port);
+        tomcat.getConnector();
+
+        Context context = tomcat.addContext("", baseDir.toString());
+        Tomcat.addServlet(context, "rest", new FakeRestServlet(settings, scheduler)).setAsyncSupported(true);
+        context.addServletMappingDecoded("/v2/*", "rest");
+
+        ServerEndpointConfig realtime = ServerEndpointConfig.Builder.create(FakeRealtimeSession.class, "/v2/realtime/ws")
+                .configurator(new ServerEndpointConfig.Configurator() {
+                    @Override
+                    public <T> T getEndpointInstance(Class<T> endpointClass) {
+                        Endpoint session = new FakeRealtimeSession(settings, scheduler);
+                        return endpointClass.cast(session);
+                    }
+                })
+                .build();
+        context.addServletContainerInitializer(new WsSci(), null);
+        // Runs after WsSci, which publishes the container
+        context.addServletContainerInitializer((classes, servletContext) -> {
+            try {
+                ((ServerContainer) servletContext.getAttribute(ServerContainer.class.getName())).addEndpoint(realtime);
+            } catch (jakarta.websocket.DeploymentException e) {
+                throw new IllegalStateException(e);
+            }
+        }, null);
+    }
+
+    public void start() throws LifecycleException {
+        tomcat.start();
+        log.info("Fake AssemblyAI listening on {}", baseUrl());
+    }
+
+    public String baseUrl() {
+        return "http://localhost:" + tomcat.getConnector().getLocalPort() + "/v2";
+    }
+
+    public String realtimeUrl() {
+        return "ws://localhost:" + tomcat.getConnector().getLocalPort() + "/v2/realtime/ws";
+    }
+
+    @Override
+    public void close() throws LifecycleException {
+        scheduler.shutdownNow();
+        tomcat.stop();
+        tomcat.destroy();
+    }
+}
@@ -0,0 +1,128 @@
+package com.fyp.speechtotextservice.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import jakarta.websocket.CloseReason;
+import jakarta.websocket.Endpoint;
+import jakarta.websocket.EndpointConfig;
+import jakarta.websocket.MessageHandler;
+import jakarta.websocket.Session;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One realtime stream of the fake upstream. Audio is accepted as binary frames or base64 JSON;
+ * a partial covering the current utterance goes out every partial interval of audio and a final
+ * every final interval, each after the configured latency. Messages keep their order.
+ */
+class FakeRealtimeSession extends Endpoint {
+
+    private static final ObjectMapper JSON = new ObjectMapper();
+
+    private final FakeUpstreamSettings settings;
+    private final ScheduledExecutorService scheduler;
+    private Session session;
+    private int bytesPerMilli = 32;
+    private long receivedBytes;
+    private long utteranceStartMs;
+    private long lastPartialMs;
+    private long lastSendAt;
+
+    FakeRealtimeSession(FakeUpstreamSettings settings, ScheduledExecutorService scheduler) {
+        this.settings = settings;
+        this.scheduler = scheduler;
+    }
+
+    @Override
+    public void onOpen(Session session, EndpointConfig config) {
+        this.session = session;
+        List<String> sampleRate = session.getRequestParameterMap().get("sample_rate");
+        if (sampleRate != null && !sampleRate.isEmpty()) {
+            bytesPerMilli = Math.max(1, Integer.parseInt(sampleRate.get(0)) * 2 / 1000);
+        }
+        if (settings.fail()) {
+            send(JSON.createObjectNode().put("error", "Simulated realtime failure"), true);
+            return;
+        }
+        send(JSON.createObjectNode()
+                .put("message_type", "SessionBegins")
+                .put("session_id", UUID.randomUUID().toString())
+                .put("expires_at", Instant.now().plusSeconds(3600).toString()), false);
+
+        session.addMessageHandler(ByteBuffer.class, (MessageHandler.Whole<ByteBuffer>) audio -> onAudio(audio.remaining()));
+        session.addMessageHandler(String.class, (MessageHandler.Whole<String>) this::onText);
+    }
+
+    private void onText(String message) {
+        try {
+            JsonNode json = JSON.readTree(message);
+            if (json.path("terminate_session").asBoolean()) {
+                send(JSON.createObjectNode().put("message_type", "SessionTerminated"), true);
+            } else if (json.has("audio_data")) {
+                onAudio(Base64.getDecoder().decode(json.get("audio_data").asText()).length);
+            }
+        } catch (IOException e) {
+            send(JSON.createObjectNode().put("error", "Malformed message"), true);
+        }
+    }
+
+    private synchronized void onAudio(int bytes) {
+        receivedBytes += bytes;
+        long audioMs = receivedBytes / bytesPerMilli;
+        if (audioMs - utteranceStartMs >= settings.finalInterval().toMillis()) {
+            send(transcript("FinalTranscript", utteranceStartMs, audioMs), false);
+            utteranceStartMs = audioMs;
+            lastPartialMs = audioMs;
+        } else if (audioMs - lastPartialMs >= settings.partialInterval().toMillis()) {
+            send(transcript("PartialTranscript", utteranceStartMs, audioMs), false);
+            lastPartialMs = audioMs;
+        }
+    }
+
+    private static ObjectNode transcript(String type, long startMs, long endMs) {
+        ObjectNode message = JSON.createObjectNode()
+                .put("message_type", type)
+                .put("audio_start", startMs)
+                .put("audio_end", endMs)
+                .put("confidence", 0.9);
+        ArrayNode words = message.putArray("words");
+        StringBuilder text = new StringBuilder();
+        for (long start = startMs; start + 400 <= endMs; start += 400) {
+            String word = SyntheticWords.at(start);
+            text.append(text.isEmpty() ? "" : " ").append(word);
+            words.addObject().put("text", word).put("start", start).put("end", start + 350).put("confidence", 0.9);
+        }
+        message.put("text", text.toString());
+        return message;
+    }
+
+    private synchronized void send(ObjectNode message, boolean thenClose) {
+        // Never earlier than the previous message, so jitter cannot reorder them
+        long sendAt = Math.max(lastSendAt, System.currentTimeMillis() + settings.delayMillis());
+        lastSendAt = sendAt;
+        String text = message.toString();
+        scheduler.schedule(() -> {
+            synchronized (session) {
+                try {
+                    if (session.isOpen()) {
+                        session.getBasicRemote().sendText(text);
+                        if (thenClose) {
+                            session.close(new CloseReason(CloseReason.CloseCodes.NORMAL_CLOSURE, null));
+                        }
+                    }
+                } catch (IOException e) {
+                    // the service went away
+                }
+            }
+        }, sendAt - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+    }
+}
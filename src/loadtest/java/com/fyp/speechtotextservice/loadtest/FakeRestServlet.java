@@ -0,0 +1,119 @@
+package com.fyp.speechtotextservice.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import jakarta.servlet.AsyncContext;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The REST half of the fake upstream. Responses are delayed on a scheduler rather than a
+ * sleeping request thread, so the fake itself is never the bottleneck.
+ */
+class FakeRestServlet extends HttpServlet {
+
+    // PCM16 at 16 kHz, to turn uploads into audio durations for the synthetic words
+    private static final long BYTES_PER_SECOND = 32_000;
+
+    private final FakeUpstreamSettings settings;
+    private final ScheduledExecutorService scheduler;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Map<String, Long> uploads = new ConcurrentHashMap<>();
+    private final Map<String, Transcript> transcripts = new ConcurrentHashMap<>();
+
+    private record Transcript(long uploadBytes, long completesAt, boolean failed) {
+    }
+
+    FakeRestServlet(FakeUpstreamSettings settings, ScheduledExecutorService scheduler) {
+        this.settings = settings;
+        this.scheduler = scheduler;
+    }
+
+    @Override
+    protected void doPost(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        String path = request.getPathInfo();
+        if ("/upload".equals(path)) {
+            long size;
+            try (InputStream in = request.getInputStream()) {
+                size = in.transferTo(OutputStream.nullOutputStream());
+            }
+            if (settings.fail()) {
+                respond(request, response, 500, objectMapper.createObjectNode().put("error", "Simulated upload failure"));
+                return;
+            }
+            String uploadUrl = request.getRequestURL().toString().replace("/upload", "/uploads/" + UUID.randomUUID());
+            uploads.put(uploadUrl, size);
+            respond(request, response, 200, objectMapper.createObjectNode().put("upload_url", uploadUrl));
+        } else if ("/transcript".equals(path)) {
+            JsonNode params = objectMapper.readTree(request.getInputStream());
+            Long uploadBytes = uploads.remove(params.path("audio_url").asText());
+            if (uploadBytes == null) {
+                respond(request, response, 400, objectMapper.createObjectNode().put("error", "Unknown audio_url"));
+                return;
+            }
+            String id = UUID.randomUUID().toString();
+            long completesAt = System.currentTimeMillis() + settings.transcriptLatency().toMillis() + settings.delayMillis();
+            transcripts.put(id, new Transcript(uploadBytes, completesAt, settings.fail()));
+            respond(request, response, 200, objectMapper.createObjectNode().put("id", id).put("status", "queued"));
+        } else {
+            response.sendError(404);
+        }
+    }
+
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        String path = request.getPathInfo();
+        Transcript transcript = path != null && path.startsWith("/transcript/")
+                ? transcripts.get(path.substring("/transcript/".length())) : null;
+        if (transcript == null) {
+            response.sendError(404);
+            return;
+        }
+        ObjectNode body = objectMapper.createObjectNode();
+        if (System.currentTimeMillis() < transcript.completesAt()) {
+            body.put("status", "processing");
+        } else if (transcript.failed()) {
+            body.put("status", "error").put("error", "Simulated transcription failure");
+        } else {
+            body.put("status", "completed").put("language_code", "en");
+            ArrayNode words = body.putArray("words");
+            StringBuilder text = new StringBuilder();
+            long durationMs = transcript.uploadBytes() * 1000 / BYTES_PER_SECOND;
+            for (long start = 0; start + 400 <= durationMs; start += 400) {
+                String word = SyntheticWords.at(start);
+                text.append(text.isEmpty() ? "" : " ").append(word);
+                words.addObject().put("text", word).put("start", start).put("end", start + 350).put("confidence", 0.9);
+            }
+            body.put("text", text.toString());
+        }
+        respond(request, response, 200, body);
+    }
+
+    private void respond(HttpServletRequest request, HttpServletResponse response, int status, JsonNode body) {
+        AsyncContext async = request.startAsync();
+        async.setTimeout(0);
+        scheduler.schedule(() -> {
+            try {
+                response.setStatus(status);
+                response.setContentType("application/json");
+                objectMapper.writeValue(response.getOutputStream(), body);
+            } catch (IOException e) {
+                // client gone
+            } finally {
+                async.complete();
+            }
+        }, settings.delayMillis(), TimeUnit.MILLISECONDS);
+    }
+}
@@ -0,0 +1,38 @@
+package com.fyp.speechtotextservice.loadtest;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Behaviour of the fake AssemblyAI upstream.
+ *
+ * @param latency           added before every REST response and realtime message
+ * @param jitter            up to this much more, uniformly distributed
+ * @param errorRate         share of uploads, transcripts and realtime sessions that fail
+ * @param transcriptLatency time from transcript submission to completion
+ * @param partialInterval   audio between realtime partials
+ * @param finalInterval     audio per realtime final
+ */
+record FakeUpstreamSettings(Duration latency, Duration jitter, double errorRate, Duration transcriptLatency,
+                            Duration partialInterval, Duration finalInterval) {
+
+    static FakeUpstreamSettings from(Map<String, String> options) {
+        return new FakeUpstreamSettings(
+                Duration.parse(options.getOrDefault("latency", "PT0.15S")),
+                Duration.parse(options.getOrDefault("jitter", "PT0.1S")),
+                Double.parseDouble(options.getOrDefault("error-rate", "0")),
+                Duration.parse(options.getOrDefault("transcript-latency", "PT2S")),
+                Duration.parse(options.getOrDefault("partial-interval", "PT0.5S")),
+                Duration.parse(options.getOrDefault("final-interval", "PT3S")));
+    }
+
+    long delayMillis() {
+        long jitterMillis = jitter.toMillis();
+        return latency.toMillis() + (jitterMillis > 0 ? ThreadLocalRandom.current().nextLong(jitterMillis + 1) : 0);
+    }
+
+    boolean fail() {
+        return errorRate > 0 && ThreadLocalRandom.current().nextDouble() < errorRate;
+    }
+}
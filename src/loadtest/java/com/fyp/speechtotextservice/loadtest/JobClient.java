@@ -0,0 +1,83 @@
+package com.fyp.speechtotextservice.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Sends synchronous file and link transcription requests. Every request carries media the
+ * service has not seen before, so neither its transcript cache nor its audio cache answers it.
+ */
+class JobClient {
+
+    private static final ObjectMapper JSON = new ObjectMapper();
+    private static final String VIDEO_ID_CHARS = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789_-";
+
+    private final HttpClient http;
+    private final URI baseUri;
+    private final byte[] wav;
+    private final Supplier<LoadStats> stats;
+    private final AtomicLong jobs = new AtomicLong();
+
+    JobClient(HttpClient http, URI baseUri, byte[] wav, Supplier<LoadStats> stats) {
+        this.http = http;
+        this.baseUri = baseUri;
+        this.wav = wav;
+        this.stats = stats;
+    }
+
+    void fileJob() {
+        byte[] media = wav.clone();
+        // Make the content unique past the header
+        long stamp = ThreadLocalRandom.current().nextLong();
+        for (int i = 0; i < 8; i++) {
+            media[44 + i] = (byte) (stamp >>> (i * 8));
+        }
+        String boundary = UUID.randomUUID().toString();
+        byte[] head = ("--" + boundary + "\r\n"
+                + "Content-Disposition: form-data; name=\"videoFile\"; filename=\"load.wav\"\r\n"
+                + "Content-Type: audio/wav\r\n\r\n").getBytes(StandardCharsets.US_ASCII);
+        byte[] tail = ("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.US_ASCII);
+        HttpRequest request = HttpRequest.newBuilder(baseUri.resolve("/api/transcribe/video"))
+                .header("Content-Type", "multipart/form-data; boundary=" + boundary)
+                .header(LiveClient.CLIENT_ID_HEADER, "loadtest-job-" + jobs.incrementAndGet())
+                .POST(HttpRequest.BodyPublishers.ofByteArrays(List.of(head, media, tail)))
+                .build();
+        send(request, LoadStats.FILE_JOB);
+    }
+
+    void linkJob() {
+        StringBuilder videoId = new StringBuilder();
+        for (int i = 0; i < 11; i++) {
+            videoId.append(VIDEO_ID_CHARS.charAt(ThreadLocalRandom.current().nextInt(VIDEO_ID_CHARS.length())));
+        }
+        String body = JSON.createObjectNode().put("mediaUrl", "https://www.youtube.com/watch?v=" + videoId).toString();
+        HttpRequest request = HttpRequest.newBuilder(baseUri.resolve("/api/transcribe/link"))
+                .header("Content-Type", "application/json")
+                .header(LiveClient.CLIENT_ID_HEADER, "loadtest-job-" + jobs.incrementAndGet())
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+        send(request, LoadStats.LINK_JOB);
+    }
+
+    private void send(HttpRequest request, String kind) {
+        long start = System.nanoTime();
+        http.sendAsync(request, HttpResponse.BodyHandlers.ofString()).whenComplete((response, error) -> {
+            LoadStats current = stats.get();
+            if (error == null && response.statusCode() == 200 && response.body().contains("\"completed\"")) {
+                current.record(kind, System.nanoTime() - start);
+            } else {
+                current.jobsFailed.incrementAndGet();
+            }
+        });
+    }
+}
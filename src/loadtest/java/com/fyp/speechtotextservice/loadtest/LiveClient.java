@@ -0,0 +1,149 @@
+package com.fyp.speechtotextservice.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.WebSocket;
+import java.nio.ByteBuffer;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.function.Supplier;
+
+/**
+ * One simulated live client on {@code /audio-stream}: sends audio in real time and measures
+ * how long after the audio was sent its transcripts come back. Latency needs the service's
+ * JSON transcript format, whose times refer to the audio as the client sent it.
+ */
+class LiveClient implements WebSocket.Listener {
+
+    private static final ObjectMapper JSON = new ObjectMapper();
+    private static final int SEND_HISTORY = 4096;
+    private static final int CLOSE_SERVICE_OVERLOAD = 1013;
+    static final String CLIENT_ID_HEADER = "X-Client-Id";
+
+    private final byte[] audio;
+    private final int chunkBytes;
+    private final int bytesPerMilli;
+    private final Supplier<LoadStats> stats;
+    private final long[] sentAt = new long[SEND_HISTORY];
+    private final StringBuilder message = new StringBuilder();
+
+    private WebSocket webSocket;
+    private CompletableFuture<WebSocket> pendingSend = CompletableFuture.completedFuture(null);
+    private long chunksSent;
+    private volatile long lastTranscriptAt = System.nanoTime();
+    private volatile boolean closed;
+    private volatile boolean closing;
+
+    LiveClient(byte[] audio, int chunkBytes, int bytesPerMilli, Supplier<LoadStats> stats) {
+        this.audio = audio;
+        this.chunkBytes = chunkBytes;
+        this.bytesPerMilli = bytesPerMilli;
+        this.stats = stats;
+    }
+
+    /**
+     * Connects as its own client, so per-client admission limits apply per simulated user.
+     */
+    CompletableFuture<WebSocket> connect(HttpClient http, URI uri, String clientId) {
+        return http.newWebSocketBuilder()
+                .header(CLIENT_ID_HEADER, clientId)
+                .buildAsync(uri, this)
+                .thenApply(ws -> webSocket = ws);
+    }
+
+    /**
+     * Sends the next chunk; called once per chunk duration.
+     */
+    synchronized void tick() {
+        if (closed || closing || webSocket == null) {
+            return;
+        }
+        if (!pendingSend.isDone()) {
+            // The service is not reading as fast as audio is produced
+            stats.get().sendsBehind.incrementAndGet();
+            return;
+        }
+        int offset = (int) (chunksSent * chunkBytes % (audio.length - audio.length % chunkBytes));
+        pendingSend = webSocket.sendBinary(ByteBuffer.wrap(audio, offset, chunkBytes), true);
+        sentAt[(int) (chunksSent % SEND_HISTORY)] = System.nanoTime();
+        chunksSent++;
+    }
+
+    boolean isClosed() {
+        return closed;
+    }
+
+    long nanosSinceTranscript() {
+        return System.nanoTime() - lastTranscriptAt;
+    }
+
+    void close() {
+        closing = true;
+        if (webSocket != null && !closed) {
+            webSocket.sendClose(WebSocket.NORMAL_CLOSURE, "");
+        }
+    }
+
+    @Override
+    public CompletionStage<?> onText(WebSocket webSocket, CharSequence data, boolean last) {
+        message.append(data);
+        if (last) {
+            onMessage(message.toString());
+            message.setLength(0);
+        }
+        webSocket.request(1);
+        return null;
+    }
+
+    private void onMessage(String text) {
+        long receivedAt = System.nanoTime();
+        lastTranscriptAt = receivedAt;
+        if (!text.startsWith("{")) {
+            return;
+        }
+        try {
+            JsonNode transcript = JSON.readTree(text);
+            long endByte = transcript.path("end").asLong() * bytesPerMilli;
+            long chunk = (endByte - 1) / chunkBytes;
+            long sentAt = sentAt(chunk);
+            if (sentAt != 0) {
+                String type = transcript.path("type").asText();
+                stats.get().record(type.equals("final") ? LoadStats.FINAL : LoadStats.PARTIAL, receivedAt - sentAt);
+            }
+        } catch (IOException e) {
+            // not a transcript
+        }
+    }
+
+    private synchronized long sentAt(long chunk) {
+        if (chunk < 0 || chunk >= chunksSent || chunk < chunksSent - SEND_HISTORY) {
+            return 0;
+        }
+        return sentAt[(int) (chunk % SEND_HISTORY)];
+    }
+
+    @Override
+    public CompletionStage<?> onClose(WebSocket webSocket, int statusCode, String reason) {
+        closed = true;
+        if (!closing) {
+            if (statusCode == CLOSE_SERVICE_OVERLOAD && chunksSent <= 1) {
+                stats.get().sessionsRejected.incrementAndGet();
+            } else {
+                stats.get().sessionsFailed.incrementAndGet();
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public void onError(WebSocket webSocket, Throwable error) {
+        if (!closed) {
+            closed = true;
+            stats.get().sessionsFailed.incrementAndGet();
+        }
+    }
+}
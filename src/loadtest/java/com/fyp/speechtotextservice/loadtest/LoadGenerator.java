@@ -0,0 +1,164 @@
+package com.fyp.speechtotextservice.loadtest;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Drives live sessions and transcription jobs against the service in steps of increasing
+ * session count. A step is sustainable when the final-transcript p99 stays within the SLO and
+ * no more than 1% of sessions fail; the report names the largest sustainable step.
+ */
+@Slf4j
+class LoadGenerator {
+
+    private static final double MAX_FAILURE_RATIO = 0.01;
+
+    private final URI baseUri;
+    private final URI streamUri;
+    private final int startSessions;
+    private final int sessionStep;
+    private final int maxSessions;
+    private final Duration stepDuration;
+    private final Duration sloP99;
+    private final Duration stallTimeout;
+    private final int chunkMillis;
+    private final double fileJobsPerSecond;
+    private final double linkJobsPerSecond;
+    private final Duration fileAudio;
+
+    private final HttpClient http = HttpClient.newBuilder().executor(Executors.newVirtualThreadPerTaskExecutor()).build();
+    private final ScheduledExecutorService ticker = Executors.newScheduledThreadPool(
+            Math.max(2, Runtime.getRuntime().availableProcessors() / 2),
+            Thread.ofPlatform().name("load-tick-", 0).daemon().factory());
+    private final List<LiveClient> clients = new ArrayList<>();
+    private volatile LoadStats stats = new LoadStats();
+
+    LoadGenerator(String target, Map<String, String> options) {
+        this.baseUri = URI.create(target);
+        this.streamUri = URI.create(target.replaceFirst("^http", "ws") + "/audio-stream");
+        this.startSessions = Integer.parseInt(options.getOrDefault("sessions", "10"));
+        this.sessionStep = Integer.parseInt(options.getOrDefault("session-step", "10"));
+        this.maxSessions = Integer.parseInt(options.getOrDefault("max-sessions", String.valueOf(startSessions)));
+        this.stepDuration = Duration.parse(options.getOrDefault("step-duration", "PT30S"));
+        this.sloP99 = Duration.parse(options.getOrDefault("slo-p99", "PT1.5S"));
+        this.stallTimeout = Duration.parse(options.getOrDefault("stall-timeout", "PT10S"));
+        this.chunkMillis = (int) Duration.parse(options.getOrDefault("chunk", "PT0.1S")).toMillis();
+        this.fileJobsPerSecond = Double.parseDouble(options.getOrDefault("file-jobs-per-second", "0"));
+        this.linkJobsPerSecond = Double.parseDouble(options.getOrDefault("link-jobs-per-second", "0"));
+        this.fileAudio = Duration.parse(options.getOrDefault("file-audio", "PT10S"));
+    }
+
+    /**
+     * Runs every step and prints the report.
+     */
+    void run() throws InterruptedException {
+        byte[] streamAudio = TestAudio.pcm(60_000, 1);
+        JobClient jobs = new JobClient(http, baseUri, TestAudio.wav(fileAudio.toMillis(), 2), () -> stats);
+        List<ScheduledFuture<?>> jobSchedules = new ArrayList<>();
+        jobSchedules.add(scheduleRate(fileJobsPerSecond, jobs::fileJob));
+        jobSchedules.add(scheduleRate(linkJobsPerSecond, jobs::linkJob));
+
+        List<String> report = new ArrayList<>();
+        report.add(String.format("%8s %10s %10s %10s %10s %9s %7s %7s %10s %10s %6s  %s",
+                "sessions", "part p50", "part p99", "final p50", "final p99", "rejected", "failed", "stalled",
+                "job p50", "job p99", "jobErr", "verdict"));
+        int sustainable = 0;
+        try {
+            for (int target = startSessions; target <= maxSessions; target += sessionStep) {
+                stats = new LoadStats();
+                openSessions(target, streamAudio);
+                Thread.sleep(stepDuration.toMillis());
+
+                LoadStats step = stats;
+                long stalled = clients.stream()
+                        .filter(client -> !client.isClosed() && client.nanosSinceTranscript() > stallTimeout.toNanos())
+                        .count();
+                long failures = step.sessionsRejected.get() + step.sessionsFailed.get() + stalled;
+                Duration finalP99 = step.percentile(LoadStats.FINAL, 0.99);
+                boolean ok = finalP99 != null && finalP99.compareTo(sloP99) <= 0 && failures <= target * MAX_FAILURE_RATIO;
+                report.add(String.format("%8d %10s %10s %10s %10s %9d %7d %7d %10s %10s %6d  %s",
+                        target,
+                        millis(step.percentile(LoadStats.PARTIAL, 0.5)), millis(step.percentile(LoadStats.PARTIAL, 0.99)),
+                        millis(step.percentile(LoadStats.FINAL, 0.5)), millis(finalP99),
+                        step.sessionsRejected.get(), step.sessionsFailed.get(), stalled,
+                        millis(jobPercentile(step, 0.5)), millis(jobPercentile(step, 0.99)), step.jobsFailed.get(),
+                        ok ? "ok" : "over"));
+                log.info(report.get(report.size() - 1));
+                if (!ok) {
+                    break;
+                }
+                sustainable = target;
+                if (sessionStep <= 0) {
+                    break;
+                }
+            }
+        } finally {
+            jobSchedules.forEach(schedule -> {
+                if (schedule != null) {
+                    schedule.cancel(false);
+                }
+            });
+            clients.forEach(LiveClient::close);
+            ticker.shutdownNow();
+        }
+
+        System.out.println();
+        report.forEach(System.out::println);
+        System.out.println();
+        System.out.printf("Max sustainable sessions: %d (final p99 <= %d ms, <= %.0f%% failed sessions)%n",
+                sustainable, sloP99.toMillis(), MAX_FAILURE_RATIO * 100);
+    }
+
+    private void openSessions(int target, byte[] audio) {
+        int toOpen = target - (int) clients.stream().filter(client -> !client.isClosed()).count();
+        List<CompletableFuture<?>> connecting = new ArrayList<>();
+        for (int i = 0; i < toOpen; i++) {
+            LiveClient client = new LiveClient(audio, chunkMillis * TestAudio.BYTES_PER_MILLI, TestAudio.BYTES_PER_MILLI,
+                    () -> stats);
+            clients.add(client);
+            connecting.add(client.connect(http, streamUri, "loadtest-live-" + clients.size()).whenComplete((ws, error) -> {
+                if (error != null) {
+                    stats.sessionsFailed.incrementAndGet();
+                    return;
+                }
+                // Spread the sends of different sessions across the chunk interval
+                long phase = (long) (Math.random() * chunkMillis);
+                ticker.scheduleAtFixedRate(client::tick, phase, chunkMillis, TimeUnit.MILLISECONDS);
+            }));
+        }
+        CompletableFuture.allOf(connecting.toArray(CompletableFuture[]::new)).exceptionally(error -> null).join();
+    }
+
+    private ScheduledFuture<?> scheduleRate(double perSecond, Runnable job) {
+        if (perSecond <= 0) {
+            return null;
+        }
+        long periodMicros = (long) (1_000_000 / perSecond);
+        return ticker.scheduleAtFixedRate(job, periodMicros, periodMicros, TimeUnit.MICROSECONDS);
+    }
+
+    // The slower of the two job kinds
+    private static Duration jobPercentile(LoadStats step, double percentile) {
+        Duration file = step.percentile(LoadStats.FILE_JOB, percentile);
+        Duration link = step.percentile(LoadStats.LINK_JOB, percentile);
+        if (file == null || link == null) {
+            return file != null ? file : link;
+        }
+        return file.compareTo(link) >= 0 ? file : link;
+    }
+
+    private static String millis(Duration duration) {
+        return duration == null ? "-" : duration.toMillis() + " ms";
+    }
+}
@@ -0,0 +1,59 @@
+package com.fyp.speechtotextservice.loadtest;
+
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Latencies and failures seen during one step of a load test.
+ */
+class LoadStats {
+
+    static final String PARTIAL = "partial";
+    static final String FINAL = "final";
+    static final String FILE_JOB = "file";
+    static final String LINK_JOB = "link";
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    final AtomicLong sessionsRejected = new AtomicLong();
+    final AtomicLong sessionsFailed = new AtomicLong();
+    final AtomicLong sendsBehind = new AtomicLong();
+    final AtomicLong jobsFailed = new AtomicLong();
+
+    void record(String name, long nanos) {
+        timer(name).record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    long count(String name) {
+        return timer(name).count();
+    }
+
+    /**
+     * @return the latency at the percentile (0.5 or 0.99), or null if nothing was recorded
+     */
+    Duration percentile(String name, double percentile) {
+        Timer timer = timer(name);
+        if (timer.count() == 0) {
+            return null;
+        }
+        for (ValueAtPercentile value : timer.takeSnapshot().percentileValues()) {
+            if (value.percentile() == percentile) {
+                return Duration.ofNanos((long) value.value(TimeUnit.NANOSECONDS));
+            }
+        }
+        return null;
+    }
+
+    private Timer timer(String name) {
+        return Timer.builder(name)
+                .publishPercentiles(0.5, 0.99)
+                // One window for the whole step
+                .distributionStatisticExpiry(Duration.ofDays(1))
+                .distributionStatisticBufferLength(1)
+                .register(registry);
+    }
+}
@@ -0,0 +1,105 @@
+package com.fyp.speechtotextservice.loadtest;
+
+import com.fyp.speechtotextservice.SpeechToTextServiceApplication;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Offline load test. By default it starts the fake AssemblyAI upstream and the service in this
+ * JVM, pointed at each other, and ramps live sessions until latency or failures exceed the
+ * limits. Options are {@code name=value}, optionally written {@code --name=value}:
+ * <ul>
+ *     <li>upstream: {@code latency}, {@code jitter}, {@code error-rate}, {@code transcript-latency},
+ *     {@code partial-interval}, {@code final-interval}, {@code upstream-port}</li>
+ *     <li>load: {@code sessions}, {@code session-step}, {@code max-sessions}, {@code step-duration},
+ *     {@code slo-p99}, {@code stall-timeout}, {@code chunk}, {@code file-jobs-per-second},
+ *     {@code link-jobs-per-second}, {@code file-audio}</li>
+ *     <li>{@code target=http://host:port} drives a service that is already running instead; start
+ *     it against a fake run with {@code upstream-only=true} and with {@code live.transcripts.format=json}</li>
+ * </ul>
+ * Any other option is passed to the in-process service, e.g. {@code live.vad.enabled=false}. Through
+ * Maven: {@code ./mvnw -Ploadtest test-compile exec:exec -Dloadtest.args="sessions=50 max-sessions=500"}.
+ */
+@Slf4j
+public class LoadTest {
+
+    private static final Set<String> OPTIONS = Set.of("latency", "jitter", "error-rate", "transcript-latency",
+            "partial-interval", "final-interval", "upstream-port", "upstream-only", "target",
+            "sessions", "session-step", "max-sessions", "step-duration", "slo-p99", "stall-timeout", "chunk",
+            "file-jobs-per-second", "link-jobs-per-second", "file-audio");
+    private static final String LOOPBACK_PROXIES = "127.0.0.1,::1";
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        List<String> serviceArgs = new ArrayList<>();
+        for (String arg : args) {
+            // Dashes are optional, so options can be given through the POM as -Dloadtest.args="sessions=50"
+            String option = arg.startsWith("--") ? arg.substring(2) : arg;
+            int equals = option.indexOf('=');
+            if (equals <= 0) {
+                serviceArgs.add(arg);
+            } else if (OPTIONS.contains(option.substring(0, equals))) {
+                options.put(option.substring(0, equals), option.substring(equals + 1));
+            } else {
+                serviceArgs.add("--" + option);
+            }
+        }
+
+        String target = options.get("target");
+        if (target != null) {
+            new LoadGenerator(target, options).run();
+            return;
+        }
+
+        try (FakeAssemblyAI upstream = new FakeAssemblyAI(FakeUpstreamSettings.from(options),
+                Integer.parseInt(options.getOrDefault("upstream-port", "0")))) {
+            upstream.start();
+            if (Boolean.parseBoolean(options.get("upstream-only"))) {
+                log.info("Start the service with --assemblyai.api.url={} --assemblyai.api.liveUrl={} "
+                        + "--assemblyai.realtime.transport=raw --live.transcripts.format=json "
+                        + "--admission.client-id.trusted-proxies={}",
+                        upstream.baseUrl(), upstream.realtimeUrl(), LOOPBACK_PROXIES);
+                Thread.currentThread().join();
+            }
+            try (ConfigurableApplicationContext service = startService(upstream, serviceArgs)) {
+                String port = service.getEnvironment().getProperty("local.server.port");
+                new LoadGenerator("http://localhost:" + port, options).run();
+            }
+        }
+    }
+
+    private static ConfigurableApplicationContext startService(FakeAssemblyAI upstream, List<String> overrides)
+            throws Exception {
+        Path work = Files.createTempDirectory("loadtest");
+        // Link jobs get a yt-dlp that prints a local WAV file
+        Path audio = Files.write(work.resolve("link.wav"), TestAudio.wav(10_000, 3));
+        Path ytDlp = Files.writeString(work.resolve("yt-dlp"), "#!/bin/sh\nexec cat '" + audio + "'\n");
+        Files.setPosixFilePermissions(ytDlp, PosixFilePermissions.fromString("rwxr-xr-x"));
+
+        List<String> args = new ArrayList<>(List.of(
+                "--server.port=0",
+                "--transcription.backend=assemblyai",
+                "--assemblyai.api.url=" + upstream.baseUrl(),
+                "--assemblyai.api.liveUrl=" + upstream.realtimeUrl(),
+                "--assemblyai.realtime.transport=raw",
+                "--live.transcripts.format=json",
+                "--youtube.downloader.path=" + ytDlp,
+                "--youtube.audio-cache.dir=" + work.resolve("yt-audio-cache"),
+                "--transcript.cache.disk-dir=",
+                // Every simulated client connects from loopback; trusting it lets X-Client-Id stand in for distinct users
+                "--admission.client-id.trusted-proxies=" + LOOPBACK_PROXIES));
+        // Command line arguments win over application.properties, and later ones over earlier ones
+        args.addAll(overrides);
+        return SpringApplication.run(SpeechToTextServiceApplication.class, args.toArray(String[]::new));
+    }
+}
@@ -0,0 +1,17 @@
+package com.fyp.speechtotextservice.loadtest;
+
+/**
+ * Deterministic filler words for synthetic transcripts.
+ */
+final class SyntheticWords {
+
+    private static final String[] WORDS = {"the", "quick", "brown", "fox", "jumps", "over", "a", "lazy", "dog",
+            "while", "seven", "speakers", "discuss", "load", "testing", "today"};
+
+    private SyntheticWords() {
+    }
+
+    static String at(long startMs) {
+        return WORDS[(int) (startMs / 400 % WORDS.length)];
+    }
+}
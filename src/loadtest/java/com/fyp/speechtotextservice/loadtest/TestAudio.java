@@ -0,0 +1,58 @@
+package com.fyp.speechtotextservice.loadtest;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Random;
+
+/**
+ * 16 kHz PCM16 mono test audio that alternates speech-like bursts with quiet pauses, so voice
+ * activity detection in the service sees a realistic mix.
+ */
+final class TestAudio {
+
+    static final int SAMPLE_RATE = 16000;
+    static final int BYTES_PER_MILLI = SAMPLE_RATE * 2 / 1000;
+
+    private static final int SPEECH_MILLIS = 2400;
+    private static final int PAUSE_MILLIS = 800;
+
+    private TestAudio() {
+    }
+
+    /**
+     * Raw PCM covering the given duration.
+     */
+    static byte[] pcm(long millis, long seed) {
+        Random random = new Random(seed);
+        int samples = (int) (millis * SAMPLE_RATE / 1000);
+        ByteBuffer pcm = ByteBuffer.allocate(samples * 2).order(ByteOrder.LITTLE_ENDIAN);
+        for (int i = 0; i < samples; i++) {
+            long ms = (long) i * 1000 / SAMPLE_RATE % (SPEECH_MILLIS + PAUSE_MILLIS);
+            double sample;
+            if (ms < SPEECH_MILLIS) {
+                // A voiced tone with a slow syllable-like envelope
+                double t = (double) i / SAMPLE_RATE;
+                double envelope = 0.5 + 0.5 * Math.sin(2 * Math.PI * 4 * t);
+                sample = envelope * (4000 * Math.sin(2 * Math.PI * 180 * t) + 1500 * Math.sin(2 * Math.PI * 360 * t))
+                        + random.nextGaussian() * 200;
+            } else {
+                sample = random.nextGaussian() * 20;
+            }
+            pcm.putShort((short) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, sample)));
+        }
+        return pcm.array();
+    }
+
+    /**
+     * A complete WAV file around {@link #pcm}.
+     */
+    static byte[] wav(long millis, long seed) {
+        byte[] data = pcm(millis, seed);
+        ByteBuffer wav = ByteBuffer.allocate(44 + data.length).order(ByteOrder.LITTLE_ENDIAN);
+        wav.put("RIFF".getBytes()).putInt(36 + data.length).put("WAVEfmt ".getBytes())
+                .putInt(16).putShort((short) 1).putShort((short) 1)
+                .putInt(SAMPLE_RATE).putInt(SAMPLE_RATE * 2).putShort((short) 2).putShort((short) 16)
+                .put("data".getBytes()).putInt(data.length).put(data);
+        return wav.array();
+    }
+}
@@ -0,0 +1,265 @@
+package com.fyp.speechtotextservice.admission;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Decides up front whether the node takes on a live session or a file/link transcription.
+ * Token buckets cap the request rate globally per kind of traffic and per client; semaphores
+ * cap how much work is in flight upstream, globally and per client. File and link work may only
+ * use part of the upstream slots, so the rest stay free for live sessions however busy
+ * transcriptions get. Requests over a limit are refused at once, with a hint of when to retry.
+ * <p>
+ * Clients are told apart by their address. The {@value #CLIENT_ID_HEADER} header is only believed
+ * from trusted proxies, since anyone else could dodge the per-client limits by changing it; callers
+ * sharing an address, such as a classroom behind NAT, therefore share one client's limits.
+ */
+@Component
+public class AdmissionController {
+
+    public static final String CLIENT_ID_HEADER = "X-Client-Id";
+
+    public enum Traffic {
+        LIVE, TRANSCRIPTION
+    }
+
+    private static final int SWEEP_EVERY = 1024;
+    private static final long CLIENT_BUSY = -1;
+
+    private final Semaphore upstreamSlots;
+    private final Semaphore transcriptionSlots;
+    private final TokenBucket liveRate;
+    private final TokenBucket transcriptionRate;
+    private final Map<String, Client> clients = new ConcurrentHashMap<>();
+    private final AtomicInteger admissions = new AtomicInteger();
+    private final double clientRate;
+    private final int clientBurst;
+    private final int clientMaxInFlight;
+    private final Duration retryAfter;
+    private final Set<String> trustedProxies = new HashSet<>();
+    private final MeterRegistry meterRegistry;
+
+    public AdmissionController(MeterRegistry meterRegistry,
+                               @Value("${admission.upstream.max-in-flight:256}") int upstreamMaxInFlight,
+                               @Value("${admission.transcription.max-in-flight:48}") int transcriptionMaxInFlight,
+                               @Value("${admission.live.rate:50}") double liveRatePerSecond,
+                               @Value("${admission.live.burst:100}") int liveBurst,
+                               @Value("${admission.transcription.rate:20}") double transcriptionRatePerSecond,
+                               @Value("${admission.transcription.burst:40}") int transcriptionBurst,
+                               @Value("${admission.client.rate:5}") double clientRate,
+                               @Value("${admission.client.burst:10}") int clientBurst,
+                               @Value("${admission.client.max-in-flight:8}") int clientMaxInFlight,
+                               @Value("${admission.retry-after:PT1S}") Duration retryAfter,
+                               @Value("${admission.client-id.trusted-proxies:}") List<String> trustedProxies) {
+        this.meterRegistry = meterRegistry;
+        this.upstreamSlots = new Semaphore(upstreamMaxInFlight);
+        int transcriptionSlotCount = Math.min(transcriptionMaxInFlight, upstreamMaxInFlight);
+        this.transcriptionSlots = new Semaphore(transcriptionSlotCount);
+        this.liveRate = new TokenBucket(liveRatePerSecond, liveBurst);
+        this.transcriptionRate = new TokenBucket(transcriptionRatePerSecond, transcriptionBurst);
+        this.clientRate = clientRate;
+        this.clientBurst = clientBurst;
+        this.clientMaxInFlight = clientMaxInFlight;
+        this.retryAfter = retryAfter;
+        for (String proxy : trustedProxies) {
+            if (!proxy.isBlank()) {
+                // Stored in the same form as the remote addresses they are compared with
+                try {
+                    this.trustedProxies.add(InetAddress.getByName(proxy.trim()).getHostAddress());
+                } catch (UnknownHostException e) {
+                    throw new IllegalArgumentException("Unknown trusted proxy: " + proxy, e);
+                }
+            }
+        }
+        Gauge.builder("admission.upstream.active", upstreamSlots, slots -> upstreamMaxInFlight - slots.availablePermits())
+                .register(meterRegistry);
+        Gauge.builder("admission.transcription.active", transcriptionSlots,
+                slots -> transcriptionSlotCount - slots.availablePermits()).register(meterRegistry);
+        Gauge.builder("admission.clients", clients, Map::size).register(meterRegistry);
+    }
+
+    /**
+     * Admits a request or refuses it straight away. The returned permit holds the request's
+     * upstream slot until it is closed.
+     *
+     * @throws AdmissionRejectedException if any rate or in-flight limit is reached
+     */
+    public Permit admit(Traffic traffic, String clientId) {
+        if (admissions.incrementAndGet() % SWEEP_EVERY == 0) {
+            sweepIdleClients();
+        }
+        TokenBucket trafficRate = traffic == Traffic.LIVE ? liveRate : transcriptionRate;
+        long waitNanos = trafficRate.tryTake();
+        if (waitNanos > 0) {
+            throw rejected(traffic, "rate", "Too many requests, try again shortly", Duration.ofNanos(waitNanos));
+        }
+        // Admitted under the map's lock for this client, so a sweep cannot drop it in between
+        long[] clientWait = new long[1];
+        Client client = clients.compute(clientId, (id, current) -> {
+            Client admitting = current != null ? current : new Client(new TokenBucket(clientRate, clientBurst));
+            clientWait[0] = admitting.tryAdmit(clientMaxInFlight);
+            return admitting;
+        });
+        if (clientWait[0] > 0) {
+            trafficRate.giveBack();
+            throw rejected(traffic, "client_rate", "Too many requests from this client", Duration.ofNanos(clientWait[0]));
+        }
+        if (clientWait[0] == CLIENT_BUSY) {
+            throw rejected(traffic, "client_in_flight",
+                    "This client already has " + clientMaxInFlight + " transcriptions in progress", retryAfter);
+        }
+        boolean transcription = traffic == Traffic.TRANSCRIPTION;
+        if (transcription && !transcriptionSlots.tryAcquire()) {
+            client.finish();
+            throw rejected(traffic, "in_flight", "Too many transcriptions in progress", retryAfter);
+        }
+        if (!upstreamSlots.tryAcquire()) {
+            if (transcription) {
+                transcriptionSlots.release();
+            }
+            client.finish();
+            throw rejected(traffic, "in_flight", "Transcription capacity is exhausted", retryAfter);
+        }
+        return new Permit(() -> {
+            upstreamSlots.release();
+            if (transcription) {
+                transcriptionSlots.release();
+            }
+            client.finish();
+        });
+    }
+
+    /**
+     * Waits for a file/link upstream slot, for work that was already accepted and queued.
+     */
+    public Permit awaitTranscriptionSlot() throws InterruptedException {
+        transcriptionSlots.acquire();
+        try {
+            upstreamSlots.acquire();
+        } catch (InterruptedException e) {
+            transcriptionSlots.release();
+            throw e;
+        }
+        return new Permit(() -> {
+            upstreamSlots.release();
+            transcriptionSlots.release();
+        });
+    }
+
+    /**
+     * The client named in the request header when the caller is a trusted proxy, otherwise the
+     * caller's address.
+     */
+    public String clientId(String header, String remoteAddress) {
+        return header != null && !header.isBlank() && trustedProxies.contains(remoteAddress) ? header : remoteAddress;
+    }
+
+    // Each removal is decided under the map's lock for that client, like admissions
+    private void sweepIdleClients() {
+        for (String clientId : clients.keySet()) {
+            clients.computeIfPresent(clientId, (id, client) -> client.isIdle() ? null : client);
+        }
+    }
+
+    /**
+     * A rejection for work turned away after admission, e.g. by a full job queue, so callers can
+     * answer it like any other: 429 with the configured retry hint.
+     */
+    public AdmissionRejectedException shed(String reason, RuntimeException cause) {
+        return rejected(Traffic.TRANSCRIPTION, reason, cause.getMessage(), retryAfter);
+    }
+
+    private AdmissionRejectedException rejected(Traffic traffic, String reason, String message, Duration retryAfter) {
+        Counter.builder("admission.rejected")
+                .tag("traffic", traffic.name().toLowerCase())
+                .tag("reason", reason)
+                .register(meterRegistry)
+                .increment();
+        return new AdmissionRejectedException(message, retryAfter);
+    }
+
+    /**
+     * An admitted request's hold on its limits. Closing is idempotent. A permit that is handed
+     * off to background work is closed by that work rather than by the request.
+     */
+    public static final class Permit implements AutoCloseable {
+
+        public static final Permit NONE = new Permit(() -> {
+        });
+
+        private final Runnable release;
+        private final AtomicBoolean released = new AtomicBoolean();
+        private volatile boolean handedOff;
+
+        private Permit(Runnable release) {
+            this.release = release;
+        }
+
+        public void handOff() {
+            handedOff = true;
+        }
+
+        public boolean isHandedOff() {
+            return handedOff;
+        }
+
+        @Override
+        public void close() {
+            if (released.compareAndSet(false, true)) {
+                release.run();
+            }
+        }
+    }
+
+    private static final class Client {
+        private final TokenBucket rate;
+        private final AtomicInteger inFlight = new AtomicInteger();
+
+        private Client(TokenBucket rate) {
+            this.rate = rate;
+        }
+
+        // Nanoseconds until the client may try again, CLIENT_BUSY if it is at its in-flight limit, else 0
+        private long tryAdmit(int maxInFlight) {
+            long waitNanos = rate.tryTake();
+            if (waitNanos > 0) {
+                return waitNanos;
+            }
+            return tryStart(maxInFlight) ? 0 : CLIENT_BUSY;
+        }
+
+        private boolean tryStart(int max) {
+            int current;
+            do {
+                current = inFlight.get();
+                if (current >= max) {
+                    return false;
+                }
+            } while (!inFlight.compareAndSet(current, current + 1));
+            return true;
+        }
+
+        private void finish() {
+            inFlight.decrementAndGet();
+        }
+
+        private boolean isIdle() {
+            return inFlight.get() == 0 && rate.isFull();
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.fyp.speechtotextservice.admission;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fyp.speechtotextservice.dto.TranscriptionResponse;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+/**
+ * Admits transcription requests before their body is read, so a refused upload costs neither
+ * multipart buffers nor a worker. The permit lives in a request attribute; it is released when
+ * the request completes unless the controller hands it off to a background job.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 10)
+public class AdmissionFilter extends OncePerRequestFilter {
+
+    private static final String PATH_PREFIX = "/api/transcribe/";
+    private static final String PERMIT_ATTRIBUTE = AdmissionFilter.class.getName() + ".permit";
+
+    private final AdmissionController admissionController;
+    private final ObjectMapper objectMapper;
+
+    public AdmissionFilter(AdmissionController admissionController, ObjectMapper objectMapper) {
+        this.admissionController = admissionController;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * The permit admitting this request, or {@link AdmissionController.Permit#NONE} if it has none.
+     */
+    public static AdmissionController.Permit permit(HttpServletRequest request) {
+        return request.getAttribute(PERMIT_ATTRIBUTE) instanceof AdmissionController.Permit permit
+                ? permit : AdmissionController.Permit.NONE;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !HttpMethod.POST.matches(request.getMethod()) || !request.getRequestURI().startsWith(PATH_PREFIX);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        String clientId = admissionController.clientId(request.getHeader(AdmissionController.CLIENT_ID_HEADER),
+                request.getRemoteAddr());
+        AdmissionController.Permit permit;
+        try {
+            permit = admissionController.admit(AdmissionController.Traffic.TRANSCRIPTION, clientId);
+        } catch (AdmissionRejectedException e) {
+            reject(response, e);
+            return;
+        }
+        request.setAttribute(PERMIT_ATTRIBUTE, permit);
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            if (!permit.isHandedOff()) {
+                permit.close();
+            }
+        }
+    }
+
+    private void reject(HttpServletResponse response, AdmissionRejectedException e) throws IOException {
+        TranscriptionResponse body = new TranscriptionResponse();
+        body.setStatus("error");
+        body.setError(e.getMessage());
+        response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, Long.toString(e.getRetryAfterSeconds()));
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        objectMapper.writeValue(response.getOutputStream(), body);
+    }
+}
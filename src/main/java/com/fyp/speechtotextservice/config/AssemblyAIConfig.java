@@ -19,6 +19,13 @@ public class AssemblyAIConfig {
     @Value("${assemblyai.api.liveUrl}")
     private String assemblyAILiveUrl;
 
+    // Optional: when set, AssemblyAI calls this URL on completion and polling becomes a slow fallback
+    @Value("${assemblyai.webhook.url:}")
+    private String webhookUrl;
+
+    @Value("${assemblyai.webhook.secret:}")
+    private String webhookSecret;
+
     @Value("${youtube.downloader.path}")
     private String ytDlpPath;
 } 
\ No newline at end of file
@@ -1,85 +1,172 @@
 package com.fyp.speechtotextservice.config;
 
+import com.fyp.speechtotextservice.realtime.RealtimeCodec;
+import com.fyp.speechtotextservice.realtime.RealtimeEvent;
+import com.fyp.speechtotextservice.realtime.RealtimeListener;
+import com.fyp.speechtotextservice.realtime.RealtimeUpstream;
+import com.fyp.speechtotextservice.realtime.RealtimeUpstreamFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Component;
 import org.springframework.web.socket.*;
 import org.springframework.web.socket.client.standard.StandardWebSocketClient;
 
 import java.net.URI;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * Raw WebSocket transport for realtime transcription. Every live session gets its own
+ * {@link Stream} with its own connection and codec buffers.
+ */
 @Component
-public class AssemblyAIWebSocketClient implements WebSocketHandler {
+@ConditionalOnProperty(name = "assemblyai.realtime.transport", havingValue = "raw")
+public class AssemblyAIWebSocketClient implements RealtimeUpstreamFactory {
 
     private static final Logger log = LoggerFactory.getLogger(AssemblyAIWebSocketClient.class);
-    private WebSocketSession session;
-    private final BlockingQueue<String> transcriptionQueue = new LinkedBlockingQueue<>();
-
-    public void connect(String token, int sampleRate) throws Exception {
-        String wsUrl = String.format("wss://api.assemblyai.com/v2/realtime/ws?sample_rate=%d&token=%s", sampleRate, token);
-        StandardWebSocketClient client = new StandardWebSocketClient();
-        this.session = client.execute(this, String.valueOf(new URI(wsUrl))).get();
-        log.info("Connected to AssemblyAI WebSocket");
+    private static final long CONNECT_TIMEOUT_SECONDS = 10;
+
+    private final AssemblyAIConfig config;
+    private final StandardWebSocketClient client = new StandardWebSocketClient();
+    private final boolean base64Frames;
+
+    public AssemblyAIWebSocketClient(AssemblyAIConfig config,
+                                     @Value("${assemblyai.realtime.audio-frames:binary}") String audioFrames) {
+        this.config = config;
+        this.base64Frames = audioFrames.equalsIgnoreCase("base64");
+    }
+
+    @Override
+    public RealtimeUpstream create(int sampleRate, RealtimeListener listener) {
+        return new Stream(sampleRate, listener);
     }
 
-    public void sendAudio(byte[] audioData) {
-        if (session != null && session.isOpen()) {
-            String audioMessage = "{\"audio_data\": \"" + java.util.Base64.getEncoder().encodeToString(audioData) + "\"}";
+    /**
+     * One upstream connection. Audio goes out as binary PCM frames by default, which wrap the
+     * caller's frame and allocate nothing per frame. Base64 JSON messages are encoded into the
+     * stream's reused buffer, but WebSocket text messages can only be sent as a String, so that
+     * path still copies every frame into a new String and TextMessage.
+     */
+    private final class Stream implements RealtimeUpstream, WebSocketHandler {
+        private final int sampleRate;
+        private final RealtimeListener listener;
+        private final RealtimeCodec codec = new RealtimeCodec();
+        private volatile WebSocketSession session;
+        // Set when we close the stream ourselves, so only an upstream-initiated end is reported
+        private volatile boolean closing;
+
+        private Stream(int sampleRate, RealtimeListener listener) {
+            this.sampleRate = sampleRate;
+            this.listener = listener;
+        }
+
+        @Override
+        public void connect() {
+            URI uri = URI.create(config.getAssemblyAILiveUrl() + "?sample_rate=" + sampleRate + "&encoding=pcm_s16le");
+            WebSocketHttpHeaders headers = new WebSocketHttpHeaders();
+            headers.set("Authorization", config.getApiKey());
+            try {
+                this.session = client.execute(this, headers, uri).get(CONNECT_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while connecting to AssemblyAI", e);
+            } catch (Exception e) {
+                throw new IllegalStateException("Could not connect to AssemblyAI realtime: " + e.getMessage(), e);
+            }
+            log.info("Connected to AssemblyAI WebSocket");
+        }
+
+        @Override
+        public void sendAudio(byte[] frame, int length) {
+            WebSocketSession current = session;
+            if (current == null || !current.isOpen()) {
+                return;
+            }
             try {
-                session.sendMessage(new TextMessage(audioMessage));
+                synchronized (this) {
+                    if (base64Frames) {
+                        int size = codec.encodeAudio(frame, length);
+                        // The only per-frame allocation left; binary frames avoid it
+                        current.sendMessage(new TextMessage(new String(codec.buffer(), 0, size, StandardCharsets.ISO_8859_1)));
+                    } else {
+                        current.sendMessage(new BinaryMessage(ByteBuffer.wrap(frame, 0, length)));
+                    }
+                }
             } catch (Exception e) {
                 log.error("Error sending audio data: {}", e.getMessage());
+                if (!closing) {
+                    listener.onEvent(new RealtimeEvent.Error("Could not send audio: " + e.getMessage()));
+                }
             }
         }
-    }
 
-    public void close() throws Exception {
-        if (session != null && session.isOpen()) {
-            session.sendMessage(new TextMessage("{\"terminate_session\": true}"));
-            session.close();
-            log.info("Closed AssemblyAI WebSocket connection");
+        @Override
+        public boolean isOpen() {
+            WebSocketSession current = session;
+            return current != null && current.isOpen();
         }
-    }
 
-    public BlockingQueue<String> getTranscriptionQueue() {
-        return transcriptionQueue;
-    }
+        @Override
+        public void close() {
+            closing = true;
+            WebSocketSession current = session;
+            session = null;
+            if (current != null && current.isOpen()) {
+                try {
+                    synchronized (this) {
+                        current.sendMessage(new TextMessage(RealtimeCodec.TERMINATE_MESSAGE));
+                    }
+                    current.close();
+                    log.info("Closed AssemblyAI WebSocket connection");
+                } catch (Exception e) {
+                    log.warn("Error closing AssemblyAI WebSocket connection: {}", e.getMessage());
+                }
+            }
+        }
 
-    @Override
-    public void afterConnectionEstablished(WebSocketSession session) throws Exception {
-        this.session = session;
-        log.info("WebSocket connection established with AssemblyAI");
-    }
+        @Override
+        public void afterConnectionEstablished(WebSocketSession session) {
+            this.session = session;
+            log.debug("WebSocket connection established with AssemblyAI");
+        }
 
-    @Override
-    public void handleMessage(WebSocketSession session, WebSocketMessage<?> message) throws Exception {
-        String payload = message.getPayload().toString();
-        log.info("Received message: {}", payload);
-
-        if (payload.contains("text")) {
-            String text = payload.split("\"text\":\"")[1].split("\"")[0];
-            if (!text.isEmpty()) {
-                transcriptionQueue.offer(text);
+        @Override
+        public void handleMessage(WebSocketSession session, WebSocketMessage<?> message) throws Exception {
+            if (!(message instanceof TextMessage text)) {
+                return;
+            }
+            RealtimeEvent event = RealtimeCodec.decode(text.getPayload());
+            if (event != null) {
+                listener.onEvent(event);
             }
         }
-    }
 
-    @Override
-    public void handleTransportError(WebSocketSession session, Throwable exception) throws Exception {
-        log.error("WebSocket transport error: {}", exception.getMessage());
-        transcriptionQueue.offer("Error: " + exception.getMessage());
-    }
+        @Override
+        public void handleTransportError(WebSocketSession session, Throwable exception) {
+            log.error("WebSocket transport error: {}", exception.getMessage());
+            listener.onEvent(new RealtimeEvent.Error(exception.getMessage()));
+        }
 
-    @Override
-    public void afterConnectionClosed(WebSocketSession session, CloseStatus closeStatus) throws Exception {
-        log.info("WebSocket connection closed: {}", closeStatus);
-        this.session = null;
-    }
+        @Override
+        public void afterConnectionClosed(WebSocketSession session, CloseStatus closeStatus) {
+            log.info("WebSocket connection closed: {}", closeStatus);
+            this.session = null;
+            if (closing) {
+                return;
+            }
+            if (closeStatus.equalsCode(CloseStatus.NORMAL)) {
+                listener.onEvent(new RealtimeEvent.SessionTerminated());
+            } else {
+                listener.onEvent(new RealtimeEvent.Error("Upstream closed: " + closeStatus));
+            }
+        }
 
-    @Override
-    public boolean supportsPartialMessages() {
-        return false;
+        @Override
+        public boolean supportsPartialMessages() {
+            return false;
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,38 @@
+package com.fyp.speechtotextservice.config;
+
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.OkHttpClient;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+@Configuration
+public class HttpClientConfig {
+
+    /**
+     * Single HTTP client shared by everything that talks to the transcription backend,
+     * so connections (and their TLS sessions) are pooled and reused across requests.
+     */
+    @Bean
+    public OkHttpClient transcriptionHttpClient(
+            @Value("${http.client.max-idle-connections:32}") int maxIdleConnections,
+            @Value("${http.client.keep-alive:PT5M}") Duration keepAlive,
+            @Value("${http.client.max-requests:256}") int maxRequests,
+            @Value("${http.client.max-requests-per-host:64}") int maxRequestsPerHost) {
+        Dispatcher dispatcher = new Dispatcher();
+        dispatcher.setMaxRequests(maxRequests);
+        dispatcher.setMaxRequestsPerHost(maxRequestsPerHost);
+
+        return new OkHttpClient.Builder()
+                .connectionPool(new ConnectionPool(maxIdleConnections, keepAlive.toMillis(), TimeUnit.MILLISECONDS))
+                .dispatcher(dispatcher)
+                .connectTimeout(30, TimeUnit.SECONDS)
+                .readTimeout(30, TimeUnit.SECONDS)
+                .writeTimeout(30, TimeUnit.SECONDS)
+                .build();
+    }
+}
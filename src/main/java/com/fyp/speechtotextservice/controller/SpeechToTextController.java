@@ -1,15 +1,34 @@
 package com.fyp.speechtotextservice.controller;
 
+import com.fyp.speechtotextservice.admission.AdmissionController;
+import com.fyp.speechtotextservice.admission.AdmissionFilter;
+import com.fyp.speechtotextservice.admission.AdmissionRejectedException;
+import com.fyp.speechtotextservice.dto.BatchTranscriptionRequest;
 import com.fyp.speechtotextservice.dto.LinkTranscriptionRequest;
 import com.fyp.speechtotextservice.dto.TranscriptionResponse;
 import com.fyp.speechtotextservice.dto.VideoTranscriptionRequest;
-import com.fyp.speechtotextservice.service.LiveSpeechToTextService;
+import com.fyp.speechtotextservice.metrics.StageMetrics;
+import com.fyp.speechtotextservice.service.BatchTranscriptionService;
 import com.fyp.speechtotextservice.service.SpeechToTextService;
+import com.fyp.speechtotextservice.service.TranscriptionEventStreams;
+import com.fyp.speechtotextservice.service.TranscriptionJobService;
+import com.fyp.speechtotextservice.service.TranscriptionProgressListener;
+import jakarta.servlet.http.HttpServletRequest;
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 
 @Slf4j
 @RestController
@@ -18,50 +37,222 @@ import org.springframework.web.multipart.MultipartFile;
 public class SpeechToTextController {
 
     private final SpeechToTextService speechToTextService;
-    private final LiveSpeechToTextService liveSpeechToTextService;
+    private final TranscriptionJobService transcriptionJobService;
+    private final BatchTranscriptionService batchTranscriptionService;
+    private final TranscriptionEventStreams transcriptionEventStreams;
+    private final AdmissionController admissionController;
 
     @PostMapping("/transcribe/video")
     public ResponseEntity<TranscriptionResponse> transcribeVideo(
             @RequestParam("videoFile") MultipartFile videoFile,
-            @RequestParam(value = "languageCode", defaultValue = "en") String languageCode) {
+            @RequestParam(value = "languageCode", defaultValue = "en") String languageCode,
+            @RequestParam(value = "async", defaultValue = "false") boolean async,
+            HttpServletRequest servletRequest) {
         try {
+            if (async) {
+                // The multipart upload does not outlive this request, so spool it for the job
+                File spooled = speechToTextService.spoolUpload(videoFile);
+                try {
+                    AdmissionController.Permit permit = AdmissionFilter.permit(servletRequest);
+                    String jobId = transcriptionJobService.submit(StageMetrics.ENDPOINT_VIDEO,
+                            () -> speechToTextService.transcribeFile(spooled),
+                            () -> {
+                                deleteSpooledUpload(spooled);
+                                permit.close();
+                            });
+                    permit.handOff();
+                    return acceptedResponse(jobId);
+                } catch (TranscriptionJobService.JobQueueFullException e) {
+                    deleteSpooledUpload(spooled);
+                    throw e;
+                }
+            }
+
             VideoTranscriptionRequest request = new VideoTranscriptionRequest();
             request.setVideoFile(videoFile);
             request.setLanguageCode(languageCode);
-            
+
             TranscriptionResponse response = speechToTextService.transcribeVideo(request);
             return ResponseEntity.ok(response);
+        } catch (TranscriptionJobService.JobQueueFullException e) {
+            return tooBusy(e).body(errorBody(e));
         } catch (Exception e) {
             log.error("Error transcribing video", e);
-            TranscriptionResponse errorResponse = new TranscriptionResponse();
-            errorResponse.setStatus("error");
-            errorResponse.setError(e.getMessage());
-            return ResponseEntity.internalServerError().body(errorResponse);
+            return errorResponse(HttpStatus.INTERNAL_SERVER_ERROR, e);
         }
     }
 
     @PostMapping("/transcribe/link")
-    public ResponseEntity<TranscriptionResponse> transcribeFromLink(@RequestBody LinkTranscriptionRequest request) {
+    public ResponseEntity<TranscriptionResponse> transcribeFromLink(
+            @RequestBody LinkTranscriptionRequest request,
+            @RequestParam(value = "async", defaultValue = "false") boolean async,
+            HttpServletRequest servletRequest) {
         try {
+            if (async) {
+                AdmissionController.Permit permit = AdmissionFilter.permit(servletRequest);
+                String jobId = transcriptionJobService.submit(StageMetrics.ENDPOINT_LINK,
+                        () -> speechToTextService.transcribeFromLink(request), permit::close);
+                permit.handOff();
+                return acceptedResponse(jobId);
+            }
+
             TranscriptionResponse response = speechToTextService.transcribeFromLink(request);
             return ResponseEntity.ok(response);
+        } catch (TranscriptionJobService.JobQueueFullException e) {
+            return tooBusy(e).body(errorBody(e));
         } catch (Exception e) {
             log.error("Error transcribing from link", e);
-            TranscriptionResponse errorResponse = new TranscriptionResponse();
-            errorResponse.setStatus("error");
-            errorResponse.setError(e.getMessage());
-            return ResponseEntity.internalServerError().body(errorResponse);
+            return errorResponse(HttpStatus.INTERNAL_SERVER_ERROR, e);
         }
     }
 
-    @PostMapping("/liveTranscribe/audio")
-    public ResponseEntity<String> sendAudio(@RequestBody byte[] audioData) {
+    // Clients asking for text/event-stream get progress events while the job runs
+    @PostMapping(value = "/transcribe/video", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> transcribeVideoEvents(
+            @RequestParam("videoFile") MultipartFile videoFile,
+            @RequestParam(value = "languageCode", defaultValue = "en") String languageCode,
+            HttpServletRequest servletRequest) {
+        TranscriptionEventStreams.Stream events = transcriptionEventStreams.open();
+        events.onStage(TranscriptionProgressListener.STAGE_RECEIVED);
+        File spooled;
         try {
-            liveSpeechToTextService.sendAudio(audioData);
-            return ResponseEntity.ok("Audio data sent");
-        } catch (Exception e) {
-            log.error("Error sending audio data: {}", e.getMessage());
-            return ResponseEntity.status(500).body("Error sending audio: " + e.getMessage());
+            spooled = speechToTextService.spoolUpload(videoFile);
+        } catch (IOException e) {
+            log.error("Error receiving video", e);
+            events.onFailed(e.getMessage());
+            return eventResponse(HttpStatus.INTERNAL_SERVER_ERROR, events);
+        }
+        try {
+            AdmissionController.Permit permit = AdmissionFilter.permit(servletRequest);
+            transcriptionJobService.submit(StageMetrics.ENDPOINT_VIDEO,
+                    () -> speechToTextService.transcribeFile(spooled, events),
+                    () -> {
+                        deleteSpooledUpload(spooled);
+                        permit.close();
+                    }, events);
+            permit.handOff();
+            return eventResponse(HttpStatus.OK, events);
+        } catch (TranscriptionJobService.JobQueueFullException e) {
+            deleteSpooledUpload(spooled);
+            events.onFailed(e.getMessage());
+            return tooBusy(e).contentType(MediaType.TEXT_EVENT_STREAM).body(events.getEmitter());
+        }
+    }
+
+    @PostMapping(value = "/transcribe/link", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> transcribeFromLinkEvents(@RequestBody LinkTranscriptionRequest request,
+                                                              HttpServletRequest servletRequest) {
+        TranscriptionEventStreams.Stream events = transcriptionEventStreams.open();
+        events.onStage(TranscriptionProgressListener.STAGE_RECEIVED);
+        try {
+            AdmissionController.Permit permit = AdmissionFilter.permit(servletRequest);
+            transcriptionJobService.submit(StageMetrics.ENDPOINT_LINK,
+                    () -> speechToTextService.transcribeFromLink(request, events), permit::close, events);
+            permit.handOff();
+            return eventResponse(HttpStatus.OK, events);
+        } catch (TranscriptionJobService.JobQueueFullException e) {
+            events.onFailed(e.getMessage());
+            return tooBusy(e).contentType(MediaType.TEXT_EVENT_STREAM).body(events.getEmitter());
+        }
+    }
+
+    @PostMapping(value = "/transcribe/batch", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<ResponseBodyEmitter> transcribeBatch(
+            @RequestBody BatchTranscriptionRequest request,
+            @RequestHeader(value = AdmissionController.CLIENT_ID_HEADER, required = false) String clientId,
+            HttpServletRequest servletRequest) {
+        return transcribeBatch(request.getMediaUrls(), null, request.getLanguageCode(), clientId, servletRequest);
+    }
+
+    @PostMapping(value = "/transcribe/batch", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<ResponseBodyEmitter> transcribeBatchUpload(
+            @RequestParam(value = "mediaUrls", required = false) List<String> mediaUrls,
+            @RequestParam(value = "files", required = false) List<MultipartFile> files,
+            @RequestParam(value = "languageCode", defaultValue = "en") String languageCode,
+            @RequestHeader(value = AdmissionController.CLIENT_ID_HEADER, required = false) String clientId,
+            HttpServletRequest servletRequest) {
+        return transcribeBatch(mediaUrls, files, languageCode, clientId, servletRequest);
+    }
+
+    private ResponseEntity<ResponseBodyEmitter> transcribeBatch(List<String> mediaUrls, List<MultipartFile> files,
+                                                                String languageCode, String clientId,
+                                                                HttpServletRequest servletRequest) {
+        int size = (mediaUrls == null ? 0 : mediaUrls.size()) + (files == null ? 0 : files.size());
+        if (size == 0 || size > batchTranscriptionService.getMaxItems()) {
+            return batchResponse(HttpStatus.BAD_REQUEST, batchTranscriptionService.rejected(
+                    "A batch needs between 1 and " + batchTranscriptionService.getMaxItems() + " items"));
+        }
+
+        List<BatchTranscriptionService.BatchItem> items = new ArrayList<>();
+        try {
+            if (mediaUrls != null) {
+                for (String mediaUrl : mediaUrls) {
+                    items.add(batchTranscriptionService.linkItem(mediaUrl, languageCode));
+                }
+            }
+            if (files != null) {
+                for (MultipartFile file : files) {
+                    items.add(batchTranscriptionService.fileItem(file));
+                }
+            }
+            String client = admissionController.clientId(clientId, servletRequest.getRemoteAddr());
+            return batchResponse(HttpStatus.OK, batchTranscriptionService.submit(client, items));
+        } catch (TranscriptionJobService.JobQueueFullException e) {
+            return tooBusy(e).contentType(MediaType.APPLICATION_NDJSON).body(batchTranscriptionService.rejected(e.getMessage()));
+        } catch (IOException e) {
+            log.error("Error receiving batch", e);
+            items.forEach(item -> {
+                if (item.cleanup() != null) {
+                    item.cleanup().run();
+                }
+            });
+            return batchResponse(HttpStatus.INTERNAL_SERVER_ERROR, batchTranscriptionService.rejected(e.getMessage()));
+        }
+    }
+
+    @GetMapping("/jobs/{id}")
+    public ResponseEntity<TranscriptionResponse> getJob(@PathVariable("id") String id) {
+        return transcriptionJobService.getJob(id)
+                .map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+
+    private ResponseEntity<TranscriptionResponse> acceptedResponse(String jobId) {
+        TranscriptionResponse response = new TranscriptionResponse();
+        response.setId(jobId);
+        response.setStatus(TranscriptionJobService.STATUS_QUEUED);
+        return ResponseEntity.accepted().body(response);
+    }
+
+    private ResponseEntity<ResponseBodyEmitter> batchResponse(HttpStatus status, ResponseBodyEmitter emitter) {
+        return ResponseEntity.status(status).contentType(MediaType.APPLICATION_NDJSON).body(emitter);
+    }
+
+    private ResponseEntity<SseEmitter> eventResponse(HttpStatus status, TranscriptionEventStreams.Stream events) {
+        return ResponseEntity.status(status).contentType(MediaType.TEXT_EVENT_STREAM).body(events.getEmitter());
+    }
+
+    private ResponseEntity<TranscriptionResponse> errorResponse(HttpStatus status, Exception e) {
+        return ResponseEntity.status(status).body(errorBody(e));
+    }
+
+    private TranscriptionResponse errorBody(Exception e) {
+        TranscriptionResponse errorResponse = new TranscriptionResponse();
+        errorResponse.setStatus("error");
+        errorResponse.setError(e.getMessage());
+        return errorResponse;
+    }
+
+    // A full queue is shed like the admission filter sheds load: 429 with its retry hint
+    private ResponseEntity.BodyBuilder tooBusy(TranscriptionJobService.JobQueueFullException e) {
+        AdmissionRejectedException rejection = admissionController.shed("queue_full", e);
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, Long.toString(rejection.getRetryAfterSeconds()));
+    }
+
+    private void deleteSpooledUpload(File spooled) {
+        if (spooled.exists() && !spooled.delete()) {
+            log.warn("Failed to delete spooled upload: {}", spooled.getAbsolutePath());
         }
     }
-} 
\ No newline at end of file
+}
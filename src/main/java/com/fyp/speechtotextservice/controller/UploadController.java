@@ -0,0 +1,192 @@
+package com.fyp.speechtotextservice.controller;
+
+import com.fyp.speechtotextservice.admission.AdmissionController;
+import com.fyp.speechtotextservice.admission.AdmissionRejectedException;
+import com.fyp.speechtotextservice.dto.CreateUploadRequest;
+import com.fyp.speechtotextservice.dto.TranscriptionResponse;
+import com.fyp.speechtotextservice.dto.UploadStatus;
+import com.fyp.speechtotextservice.metrics.StageMetrics;
+import com.fyp.speechtotextservice.service.ResumableUploadService;
+import com.fyp.speechtotextservice.service.SpeechToTextService;
+import com.fyp.speechtotextservice.service.TranscriptionJobService;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.AllArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Resumable uploads: create an upload, PUT byte ranges as application/octet-stream with
+ * Content-Range (in parallel if wanted), GET the status to find where to resume, then complete
+ * it to queue the transcription.
+ */
+@Slf4j
+@RestController
+@RequestMapping("/api/uploads")
+@AllArgsConstructor
+public class UploadController {
+
+    private static final String UPLOAD_OFFSET_HEADER = "Upload-Offset";
+    private static final Pattern CONTENT_RANGE = Pattern.compile("bytes (\\d+)-(\\d+)/(\\d+|\\*)");
+
+    private final ResumableUploadService uploadService;
+    private final SpeechToTextService speechToTextService;
+    private final TranscriptionJobService transcriptionJobService;
+    private final AdmissionController admissionController;
+
+    @PostMapping
+    public ResponseEntity<UploadStatus> createUpload(
+            @RequestBody CreateUploadRequest request,
+            @RequestHeader(value = AdmissionController.CLIENT_ID_HEADER, required = false) String clientId,
+            HttpServletRequest servletRequest) {
+        try {
+            String client = admissionController.clientId(clientId, servletRequest.getRemoteAddr());
+            UploadStatus status = uploadService.create(client, request.getSize() == null ? 0 : request.getSize());
+            log.debug("Upload {} is for {}", status.getId(), request.getFileName());
+            return ResponseEntity.created(URI.create("/api/uploads/" + status.getId())).body(status);
+        } catch (IllegalArgumentException e) {
+            return errorStatus(HttpStatus.BAD_REQUEST, e);
+        } catch (ResumableUploadService.ClientUploadLimitException e) {
+            return tooBusy("client_uploads", e).body(errorUploadStatus(e));
+        } catch (ResumableUploadService.InsufficientStorageException e) {
+            return errorStatus(HttpStatus.INSUFFICIENT_STORAGE, e);
+        } catch (IllegalStateException e) {
+            return tooBusy("uploads_full", e).body(errorUploadStatus(e));
+        } catch (IOException e) {
+            log.error("Error creating upload", e);
+            return errorStatus(HttpStatus.INTERNAL_SERVER_ERROR, e);
+        }
+    }
+
+    @GetMapping("/{id}")
+    public ResponseEntity<UploadStatus> getUpload(@PathVariable("id") String id) {
+        try {
+            return statusResponse(HttpStatus.OK, uploadService.status(id));
+        } catch (ResumableUploadService.UploadNotFoundException e) {
+            return errorStatus(HttpStatus.NOT_FOUND, e);
+        }
+    }
+
+    // The body is streamed straight to disk, so it is read from the request rather than bound
+    @PutMapping(value = "/{id}", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public ResponseEntity<UploadStatus> putRange(@PathVariable("id") String id,
+                                                 @RequestHeader(HttpHeaders.CONTENT_RANGE) String contentRange,
+                                                 HttpServletRequest request) {
+        Matcher range = CONTENT_RANGE.matcher(contentRange);
+        if (!range.matches()) {
+            return errorStatus(HttpStatus.BAD_REQUEST,
+                    new IllegalArgumentException("Content-Range must look like 'bytes first-last/total'"));
+        }
+        try {
+            Long total = range.group(3).equals("*") ? null : Long.parseLong(range.group(3));
+            UploadStatus status = uploadService.write(id, Long.parseLong(range.group(1)), Long.parseLong(range.group(2)),
+                    total, request.getInputStream());
+            return statusResponse(HttpStatus.OK, status);
+        } catch (ResumableUploadService.UploadNotFoundException e) {
+            return errorStatus(HttpStatus.NOT_FOUND, e);
+        } catch (IllegalArgumentException e) {
+            return errorStatus(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE, e);
+        } catch (IOException e) {
+            // Usually the client went away; what did arrive is kept for the retry
+            log.debug("Range for upload {} interrupted: {}", id, e.getMessage());
+            return errorStatus(HttpStatus.BAD_REQUEST, e);
+        }
+    }
+
+    @PostMapping("/{id}/complete")
+    public ResponseEntity<TranscriptionResponse> completeUpload(
+            @PathVariable("id") String id,
+            @RequestHeader(value = AdmissionController.CLIENT_ID_HEADER, required = false) String clientId,
+            HttpServletRequest request) {
+        AdmissionController.Permit permit;
+        try {
+            permit = admissionController.admit(AdmissionController.Traffic.TRANSCRIPTION,
+                    admissionController.clientId(clientId, request.getRemoteAddr()));
+        } catch (AdmissionRejectedException e) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .header(HttpHeaders.RETRY_AFTER, Long.toString(e.getRetryAfterSeconds()))
+                    .body(errorResponse(e));
+        }
+        File file;
+        try {
+            file = uploadService.complete(id);
+        } catch (ResumableUploadService.UploadNotFoundException e) {
+            permit.close();
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(errorResponse(e));
+        } catch (IllegalStateException e) {
+            permit.close();
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(errorResponse(e));
+        }
+        try {
+            String jobId = transcriptionJobService.submit(StageMetrics.ENDPOINT_VIDEO,
+                    () -> speechToTextService.transcribeFile(file),
+                    () -> {
+                        deleteUpload(file);
+                        permit.close();
+                    });
+            TranscriptionResponse response = new TranscriptionResponse();
+            response.setId(jobId);
+            response.setStatus(TranscriptionJobService.STATUS_QUEUED);
+            return ResponseEntity.accepted().body(response);
+        } catch (TranscriptionJobService.JobQueueFullException e) {
+            deleteUpload(file);
+            permit.close();
+            return tooBusy("queue_full", e).body(errorResponse(e));
+        }
+    }
+
+    @DeleteMapping("/{id}")
+    public ResponseEntity<Void> abortUpload(@PathVariable("id") String id) {
+        try {
+            uploadService.abort(id);
+            return ResponseEntity.noContent().build();
+        } catch (ResumableUploadService.UploadNotFoundException e) {
+            return ResponseEntity.notFound().build();
+        }
+    }
+
+    private ResponseEntity<UploadStatus> statusResponse(HttpStatus httpStatus, UploadStatus status) {
+        return ResponseEntity.status(httpStatus)
+                .header(UPLOAD_OFFSET_HEADER, Long.toString(status.getOffset()))
+                .body(status);
+    }
+
+    private ResponseEntity<UploadStatus> errorStatus(HttpStatus httpStatus, Exception e) {
+        return ResponseEntity.status(httpStatus).body(errorUploadStatus(e));
+    }
+
+    private UploadStatus errorUploadStatus(Exception e) {
+        UploadStatus status = new UploadStatus();
+        status.setError(e.getMessage());
+        return status;
+    }
+
+    // Shed like the admission filter sheds load: 429 with its retry hint
+    private ResponseEntity.BodyBuilder tooBusy(String reason, RuntimeException e) {
+        AdmissionRejectedException rejection = admissionController.shed(reason, e);
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, Long.toString(rejection.getRetryAfterSeconds()));
+    }
+
+    private TranscriptionResponse errorResponse(Exception e) {
+        TranscriptionResponse errorResponse = new TranscriptionResponse();
+        errorResponse.setStatus("error");
+        errorResponse.setError(e.getMessage());
+        return errorResponse;
+    }
+
+    private void deleteUpload(File file) {
+        if (file.exists() && !file.delete()) {
+            log.warn("Failed to delete completed upload: {}", file.getAbsolutePath());
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package com.fyp.speechtotextservice.controller;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fyp.speechtotextservice.config.AssemblyAIConfig;
+import com.fyp.speechtotextservice.service.backend.TranscriptPoller;
+import lombok.AllArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+@Slf4j
+@RestController
+@RequestMapping("/api/webhooks")
+@AllArgsConstructor
+public class WebhookController {
+
+    private final AssemblyAIConfig config;
+    private final ObjectProvider<TranscriptPoller> transcriptPoller;
+
+    // AssemblyAI calls this when a transcript submitted with webhook_url finishes
+    @PostMapping("/assemblyai")
+    public ResponseEntity<Void> transcriptCompleted(
+            @RequestHeader(value = "X-Webhook-Secret", required = false) String secret,
+            @RequestBody JsonNode payload) {
+        String expectedSecret = config.getWebhookSecret();
+        if (expectedSecret != null && !expectedSecret.isBlank() && !expectedSecret.equals(secret)) {
+            return ResponseEntity.status(401).build();
+        }
+        String transcriptId = payload.path("transcript_id").asText(null);
+        if (transcriptId == null) {
+            return ResponseEntity.badRequest().build();
+        }
+        log.debug("Webhook for transcript {} with status {}", transcriptId, payload.path("status").asText());
+        transcriptPoller.ifAvailable(poller -> poller.onWebhook(transcriptId));
+        return ResponseEntity.ok().build();
+    }
+}
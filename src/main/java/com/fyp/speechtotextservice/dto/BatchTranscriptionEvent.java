@@ -0,0 +1,24 @@
+package com.fyp.speechtotextservice.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Data;
+
+/**
+ * One line of a batch's NDJSON progress stream: "accepted" once, "started", "completed" or
+ * "error" per item, then "done".
+ */
+@Data
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class BatchTranscriptionEvent {
+    private String type;
+    private Integer index;
+    private String source;
+    // Index of the item whose transcription this duplicate shares
+    private Integer duplicateOf;
+    private String text;
+    private String error;
+    private Integer total;
+    private Integer unique;
+    private Integer completed;
+    private Integer failed;
+}
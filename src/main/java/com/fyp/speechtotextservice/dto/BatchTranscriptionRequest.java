@@ -0,0 +1,11 @@
+package com.fyp.speechtotextservice.dto;
+
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class BatchTranscriptionRequest {
+    private List<String> mediaUrls;
+    private String languageCode;
+}
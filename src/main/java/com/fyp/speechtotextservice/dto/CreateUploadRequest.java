@@ -0,0 +1,10 @@
+package com.fyp.speechtotextservice.dto;
+
+import lombok.Data;
+
+@Data
+public class CreateUploadRequest {
+    // Total size of the file in bytes
+    private Long size;
+    private String fileName;
+}
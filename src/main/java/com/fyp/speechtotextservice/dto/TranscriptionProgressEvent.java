@@ -0,0 +1,18 @@
+package com.fyp.speechtotextservice.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * Data of one Server-Sent Event on a transcription progress stream; the event name is the stage.
+ */
+@Data
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class TranscriptionProgressEvent {
+    private String stage;
+    private String id;
+    private String text;
+    private String error;
+}
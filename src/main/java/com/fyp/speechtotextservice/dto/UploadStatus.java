@@ -0,0 +1,22 @@
+package com.fyp.speechtotextservice.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * State of a resumable upload. Uploading can resume from {@code offset}, the end of the bytes
+ * received contiguously from the start; {@code ranges} lists every received range, inclusive,
+ * for clients sending chunks in parallel.
+ */
+@Data
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class UploadStatus {
+    private String id;
+    private Long size;
+    private Long offset;
+    private List<String> ranges;
+    private Boolean complete;
+    private String error;
+}
@@ -0,0 +1,68 @@
+package com.fyp.speechtotextservice.live;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Shared pool of fixed-size PCM16 mono frames for live audio. Frames hold 50-100 ms of audio,
+ * the upstream send size, so every session reuses the same arrays instead of allocating one
+ * per browser chunk.
+ */
+@Component
+public class AudioFramePool {
+
+    private static final long MIN_FRAME_MILLIS = 50;
+    private static final long MAX_FRAME_MILLIS = 100;
+
+    private final int frameBytes;
+    private final long frameMillis;
+    private final int maxPooled;
+    private final Queue<byte[]> free = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pooled = new AtomicInteger();
+
+    public AudioFramePool(MeterRegistry meterRegistry,
+                          @Value("${live.audio.sample-rate:16000}") int sampleRate,
+                          @Value("${live.audio.frame-duration:PT0.1S}") Duration frameDuration,
+                          @Value("${live.audio.pool-size:2048}") int maxPooled) {
+        this.frameMillis = Math.max(MIN_FRAME_MILLIS, Math.min(MAX_FRAME_MILLIS, frameDuration.toMillis()));
+        this.frameBytes = (int) (sampleRate * 2 * frameMillis / 1000);
+        this.maxPooled = maxPooled;
+        Gauge.builder("live.audio.pool.free", pooled, AtomicInteger::get)
+                .description("Idle live audio frames kept for reuse")
+                .register(meterRegistry);
+    }
+
+    public byte[] acquire() {
+        byte[] frame = free.poll();
+        if (frame == null) {
+            return new byte[frameBytes];
+        }
+        pooled.decrementAndGet();
+        return frame;
+    }
+
+    public void release(byte[] frame) {
+        if (frame.length != frameBytes || pooled.incrementAndGet() > maxPooled) {
+            if (frame.length == frameBytes) {
+                pooled.decrementAndGet();
+            }
+            return;
+        }
+        free.offer(frame);
+    }
+
+    public int getFrameBytes() {
+        return frameBytes;
+    }
+
+    public long getFrameMillis() {
+        return frameMillis;
+    }
+}
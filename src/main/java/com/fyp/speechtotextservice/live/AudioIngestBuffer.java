@@ -0,0 +1,171 @@
+package com.fyp.speechtotextservice.live;
+
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded ring of pooled frames between the WebSocket thread and the upstream sender. Incoming
+ * chunks of any size are copied into the current frame; only full frames are queued, so
+ * upstream always receives evenly sized sends. Full frames are queued outside the buffer's lock,
+ * so a writer waiting under the block policy never holds up {@link #clear()}.
+ */
+class AudioIngestBuffer {
+
+    /**
+     * A full frame and the time its last byte arrived, for latency measurement.
+     */
+    record QueuedFrame(byte[] data, long arrivedNanos) {
+    }
+
+    private final String sessionId;
+    private final AudioFramePool pool;
+    private final BlockingQueue<QueuedFrame> frames;
+    private final int capacity;
+    private final AudioOverflowPolicy policy;
+    private final Duration blockTimeout;
+
+    private final AtomicLong droppedFrames = new AtomicLong();
+    private final AtomicLong sentFrames = new AtomicLong();
+    private volatile long receivedBytes;
+    private volatile boolean cleared;
+
+    // Written only under the buffer's lock by the WebSocket thread
+    private byte[] filling;
+    private int filled;
+
+    AudioIngestBuffer(String sessionId, AudioFramePool pool, int capacity,
+                      AudioOverflowPolicy policy, Duration blockTimeout) {
+        this.sessionId = sessionId;
+        this.pool = pool;
+        this.frames = new ArrayBlockingQueue<>(capacity);
+        this.capacity = capacity;
+        this.policy = policy;
+        this.blockTimeout = blockTimeout;
+    }
+
+    /**
+     * Copies the chunk into frames, queueing each one as it fills up.
+     *
+     * @throws LiveAudioOverflowException if the buffer is full and the policy says to give up
+     */
+    void write(ByteBuffer chunk) throws InterruptedException {
+        receivedBytes += chunk.remaining();
+        QueuedFrame frame;
+        while ((frame = fill(chunk)) != null) {
+            enqueue(frame);
+            // A frame queued while clear() ran would never be taken
+            if (cleared) {
+                clear();
+                return;
+            }
+        }
+    }
+
+    // Copies from the chunk until a frame is full (returned) or the chunk runs out (null)
+    private synchronized QueuedFrame fill(ByteBuffer chunk) {
+        while (!cleared && chunk.hasRemaining()) {
+            if (filling == null) {
+                filling = pool.acquire();
+                filled = 0;
+            }
+            int count = Math.min(chunk.remaining(), filling.length - filled);
+            chunk.get(filling, filled, count);
+            filled += count;
+            if (filled == filling.length) {
+                byte[] frame = filling;
+                filling = null;
+                return new QueuedFrame(frame, System.nanoTime());
+            }
+        }
+        return null;
+    }
+
+    private void enqueue(QueuedFrame frame) throws InterruptedException {
+        if (frames.offer(frame)) {
+            return;
+        }
+        switch (policy) {
+            case DROP_OLDEST -> {
+                // The sender may free a slot in between, so keep trying until the frame fits
+                while (!frames.offer(frame)) {
+                    QueuedFrame oldest = frames.poll();
+                    if (oldest != null) {
+                        pool.release(oldest.data());
+                        droppedFrames.incrementAndGet();
+                    }
+                }
+            }
+            case BLOCK -> {
+                if (!frames.offer(frame, blockTimeout.toMillis(), TimeUnit.MILLISECONDS)) {
+                    overflow(frame);
+                }
+            }
+            case CLOSE -> overflow(frame);
+        }
+    }
+
+    private void overflow(QueuedFrame frame) {
+        pool.release(frame.data());
+        droppedFrames.incrementAndGet();
+        throw new LiveAudioOverflowException(sessionId, capacity);
+    }
+
+    QueuedFrame take() throws InterruptedException {
+        return frames.take();
+    }
+
+    /**
+     * Returns a frame to the pool once its bytes have been handed upstream.
+     */
+    void sent(byte[] frame) {
+        sentFrames.incrementAndGet();
+        pool.release(frame);
+    }
+
+    /**
+     * Returns a frame to the pool that could not be handed upstream.
+     */
+    void dropped(byte[] frame) {
+        droppedFrames.incrementAndGet();
+        pool.release(frame);
+    }
+
+    /**
+     * Releases every buffered frame; later writes are discarded.
+     */
+    synchronized void clear() {
+        cleared = true;
+        QueuedFrame frame;
+        while ((frame = frames.poll()) != null) {
+            pool.release(frame.data());
+        }
+        if (filling != null) {
+            pool.release(filling);
+            filling = null;
+        }
+    }
+
+    int depth() {
+        return frames.size();
+    }
+
+    long droppedFrames() {
+        return droppedFrames.get();
+    }
+
+    long sentFrames() {
+        return sentFrames.get();
+    }
+
+    long receivedBytes() {
+        return receivedBytes;
+    }
+
+    int frameBytes() {
+        return pool.getFrameBytes();
+    }
+}
@@ -0,0 +1,188 @@
+package com.fyp.speechtotextservice.live;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Converts one live client's declared audio format into upstream PCM16 mono, chunk by chunk:
+ * channels are averaged, then a windowed-sinc polyphase filter resamples to the upstream rate.
+ * A sample split across chunks, the filter history and the filter phase all carry over, so chunk
+ * boundaries do not matter. Once the output array has grown to the largest chunk seen, converting
+ * allocates nothing. Not thread-safe; each session has its own.
+ */
+public final class AudioInputConverter {
+
+    // Filter half-width in zero crossings of the (lower) cutoff frequency
+    private static final int ZERO_CROSSINGS = 8;
+    // Cutoff relative to the lower Nyquist frequency, leaving room for the transition band
+    private static final double CUTOFF = 0.95;
+    private static final int MAX_PHASES = 512;
+    private static final float FLOAT_SCALE = 32767f;
+
+    private final AudioInputFormat format;
+    private final int frameBytes;
+    private final float channelScale;
+    private final byte[] partialFrame;
+    private final ByteBuffer partialBuffer;
+    private int partialLength;
+
+    private final boolean resampling;
+    // Input samples per output sample, as the reduced fraction step / denominator
+    private final int step;
+    private final int denominator;
+    private final int phases;
+    private final int halfTaps;
+    private final int taps;
+    private final float[] coefficients;
+    // Ring of recent input, written twice so any window of taps reads contiguously
+    private final float[] history;
+    private final int historyMask;
+    private long written;
+    private long position;
+    private int fraction;
+
+    private byte[] output = new byte[0];
+    private ByteBuffer outputBuffer = ByteBuffer.wrap(output);
+    private int outputLength;
+
+    public AudioInputConverter(AudioInputFormat format, int upstreamSampleRate) {
+        this.format = format;
+        this.frameBytes = format.frameBytes();
+        this.channelScale = (format.encoding() == AudioInputFormat.Encoding.FLOAT32 ? FLOAT_SCALE : 1f) / format.channels();
+        this.partialFrame = new byte[frameBytes];
+        this.partialBuffer = ByteBuffer.wrap(partialFrame);
+
+        int gcd = gcd(format.sampleRate(), upstreamSampleRate);
+        this.step = format.sampleRate() / gcd;
+        this.denominator = upstreamSampleRate / gcd;
+        this.resampling = step != denominator;
+        this.phases = Math.min(denominator, MAX_PHASES);
+        double cutoff = CUTOFF * Math.min(1.0, (double) upstreamSampleRate / format.sampleRate());
+        this.halfTaps = resampling ? (int) Math.ceil(ZERO_CROSSINGS / cutoff) : 0;
+        this.taps = 2 * halfTaps;
+        this.coefficients = resampling ? coefficients(cutoff) : new float[0];
+        int historySize = resampling ? Integer.highestOneBit(taps + 1) << 1 : 0;
+        this.history = new float[historySize * 2];
+        this.historyMask = historySize - 1;
+    }
+
+    public AudioInputFormat getFormat() {
+        return format;
+    }
+
+    /**
+     * Converts a chunk of client audio. The returned buffer is reused by the next call.
+     */
+    public ByteBuffer convert(ByteBuffer input) {
+        int start = input.position();
+        int end = input.limit();
+        int frames = (partialLength + end - start) / frameBytes;
+        ensureCapacity(resampling ? (int) ((frames + 1L) * denominator / step) + 2 : frames);
+        outputLength = 0;
+
+        int offset = start;
+        if (partialLength > 0) {
+            int needed = Math.min(frameBytes - partialLength, end - offset);
+            input.get(offset, partialFrame, partialLength, needed);
+            partialLength += needed;
+            offset += needed;
+            if (partialLength < frameBytes) {
+                return result();
+            }
+            push(mix(partialBuffer, 0));
+            partialLength = 0;
+        }
+        for (; offset + frameBytes <= end; offset += frameBytes) {
+            push(mix(input, offset));
+        }
+        partialLength = end - offset;
+        if (partialLength > 0) {
+            input.get(offset, partialFrame, 0, partialLength);
+        }
+        return result();
+    }
+
+    private float mix(ByteBuffer buffer, int offset) {
+        float sum = 0;
+        if (format.encoding() == AudioInputFormat.Encoding.PCM16) {
+            for (int channel = 0; channel < format.channels(); channel++, offset += 2) {
+                sum += (short) ((buffer.get(offset) & 0xff) | (buffer.get(offset + 1) << 8));
+            }
+        } else {
+            for (int channel = 0; channel < format.channels(); channel++, offset += 4) {
+                sum += Float.intBitsToFloat((buffer.get(offset) & 0xff) | (buffer.get(offset + 1) & 0xff) << 8
+                        | (buffer.get(offset + 2) & 0xff) << 16 | buffer.get(offset + 3) << 24);
+            }
+        }
+        return sum * channelScale;
+    }
+
+    private void push(float sample) {
+        if (!resampling) {
+            emit(sample);
+            return;
+        }
+        int slot = (int) (written & historyMask);
+        history[slot] = sample;
+        history[slot + historyMask + 1] = sample;
+        written++;
+        // Emit every output whose filter window is now fully inside the history
+        while (position + halfTaps < written) {
+            int phase = phases == denominator ? fraction : (int) ((long) fraction * phases / denominator);
+            int coefficient = phase * taps;
+            int first = (int) ((position - halfTaps + 1) & historyMask);
+            float sum = 0;
+            for (int tap = 0; tap < taps; tap++) {
+                sum += history[first + tap] * coefficients[coefficient + tap];
+            }
+            emit(sum);
+            fraction += step;
+            position += fraction / denominator;
+            fraction %= denominator;
+        }
+    }
+
+    private void emit(float sample) {
+        int value = Math.round(sample);
+        value = Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, value));
+        output[outputLength++] = (byte) value;
+        output[outputLength++] = (byte) (value >> 8);
+    }
+
+    private ByteBuffer result() {
+        return outputBuffer.clear().limit(outputLength);
+    }
+
+    private void ensureCapacity(int samples) {
+        if (output.length < samples * 2) {
+            output = new byte[samples * 2];
+            outputBuffer = ByteBuffer.wrap(output);
+        }
+    }
+
+    /**
+     * Blackman-windowed sinc taps for each phase, each phase normalized to unity gain.
+     */
+    private float[] coefficients(double cutoff) {
+        float[] table = new float[phases * taps];
+        for (int phase = 0; phase < phases; phase++) {
+            double offset = (double) phase / phases;
+            double sum = 0;
+            for (int tap = 0; tap < taps; tap++) {
+                double t = offset + halfTaps - 1 - tap;
+                double x = t / halfTaps;
+                double window = Math.abs(x) >= 1 ? 0 : 0.42 + 0.5 * Math.cos(Math.PI * x) + 0.08 * Math.cos(2 * Math.PI * x);
+                double value = t == 0 ? cutoff : Math.sin(Math.PI * cutoff * t) / (Math.PI * t);
+                table[phase * taps + tap] = (float) (value * window);
+                sum += value * window;
+            }
+            for (int tap = 0; tap < taps; tap++) {
+                table[phase * taps + tap] /= (float) sum;
+            }
+        }
+        return table;
+    }
+
+    private static int gcd(int a, int b) {
+        return b == 0 ? a : gcd(b, a % b);
+    }
+}
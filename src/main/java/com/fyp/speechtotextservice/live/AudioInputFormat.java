@@ -0,0 +1,87 @@
+package com.fyp.speechtotextservice.live;
+
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.net.URI;
+import java.util.Locale;
+
+/**
+ * The audio format a live client declares when it opens /audio-stream, as query parameters:
+ * {@code sampleRate}, {@code channels} and {@code encoding} ({@code pcm16} or {@code float32},
+ * little-endian and interleaved). Anything not declared defaults to the upstream format.
+ */
+public record AudioInputFormat(int sampleRate, int channels, Encoding encoding) {
+
+    public enum Encoding {
+        PCM16(2), FLOAT32(4);
+
+        private final int bytesPerSample;
+
+        Encoding(int bytesPerSample) {
+            this.bytesPerSample = bytesPerSample;
+        }
+
+        public int bytesPerSample() {
+            return bytesPerSample;
+        }
+    }
+
+    private static final int MIN_SAMPLE_RATE = 8000;
+    private static final int MAX_SAMPLE_RATE = 192000;
+    private static final int MAX_CHANNELS = 8;
+
+    public AudioInputFormat {
+        if (sampleRate < MIN_SAMPLE_RATE || sampleRate > MAX_SAMPLE_RATE) {
+            throw new IllegalArgumentException("Unsupported sample rate: " + sampleRate);
+        }
+        if (channels < 1 || channels > MAX_CHANNELS) {
+            throw new IllegalArgumentException("Unsupported channel count: " + channels);
+        }
+    }
+
+    /**
+     * Reads the format from the handshake URI.
+     *
+     * @throws IllegalArgumentException if a declared value is malformed or unsupported
+     */
+    public static AudioInputFormat fromUri(URI uri, int upstreamSampleRate) {
+        var params = UriComponentsBuilder.fromUri(uri).build().getQueryParams();
+        return new AudioInputFormat(
+                intParam(params.getFirst("sampleRate"), upstreamSampleRate),
+                intParam(params.getFirst("channels"), 1),
+                encodingParam(params.getFirst("encoding")));
+    }
+
+    private static int intParam(String value, int defaultValue) {
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Malformed number: " + value);
+        }
+    }
+
+    private static Encoding encodingParam(String value) {
+        if (value == null) {
+            return Encoding.PCM16;
+        }
+        try {
+            return Encoding.valueOf(value.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unsupported encoding: " + value);
+        }
+    }
+
+    public int frameBytes() {
+        return channels * encoding.bytesPerSample();
+    }
+
+    /**
+     * Whether audio in this format can go upstream unchanged.
+     */
+    public boolean isUpstreamFormat(int upstreamSampleRate) {
+        return sampleRate == upstreamSampleRate && channels == 1 && encoding == Encoding.PCM16;
+    }
+}
@@ -0,0 +1,13 @@
+package com.fyp.speechtotextservice.live;
+
+/**
+ * What a live session does when its ingest buffer is full because upstream is not keeping up.
+ */
+public enum AudioOverflowPolicy {
+    /** Hold the WebSocket thread until a frame is sent, closing the session after the block timeout. */
+    BLOCK,
+    /** Discard the oldest buffered frame to make room for the newest. */
+    DROP_OLDEST,
+    /** Close the session. */
+    CLOSE
+}
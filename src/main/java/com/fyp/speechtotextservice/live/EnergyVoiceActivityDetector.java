@@ -0,0 +1,95 @@
+package com.fyp.speechtotextservice.live;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.ConfigurableBeanFactory;
+import org.springframework.context.annotation.Scope;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Arrays;
+
+/**
+ * Energy and zero-crossing detector. A frame is speech when it is clearly louder than the
+ * session's noise floor; quieter frames still count when they cross zero often, which keeps
+ * unvoiced consonants such as "s" and "f" at word onsets.
+ * <p>
+ * The noise floor is the quietest frame of the last noise window, tracked over every frame
+ * whether or not it held speech. The pauses between words are enough to find it, so steady
+ * noise louder than the initial guess (air conditioning, fans) is learned within one window
+ * instead of being taken for speech for the rest of the session.
+ */
+@Component
+@Scope(ConfigurableBeanFactory.SCOPE_PROTOTYPE)
+public class EnergyVoiceActivityDetector implements VoiceActivityDetector {
+
+    private static final double FULL_SCALE_SQUARED = 32768.0 * 32768.0;
+    // The window is kept as the minima of a few sub-windows, so old frames age out in steps
+    private static final int NOISE_SUB_WINDOWS = 4;
+
+    private final double minEnergyDb;
+    private final double noiseMarginDb;
+    private final double zcrThreshold;
+    private final long subWindowSamples;
+    private final double[] subWindowMinima = new double[NOISE_SUB_WINDOWS];
+    private int subWindow;
+    private double currentMinimum = Double.MAX_VALUE;
+    private long currentSamples;
+    private double noiseFloorDb;
+
+    public EnergyVoiceActivityDetector(@Value("${live.vad.min-energy-db:-50}") double minEnergyDb,
+                                       @Value("${live.vad.noise-margin-db:10}") double noiseMarginDb,
+                                       @Value("${live.vad.zcr-threshold:0.25}") double zcrThreshold,
+                                       @Value("${live.audio.sample-rate:16000}") int sampleRate,
+                                       @Value("${live.vad.noise-window:PT5S}") Duration noiseWindow) {
+        this.minEnergyDb = minEnergyDb;
+        this.noiseMarginDb = noiseMarginDb;
+        this.zcrThreshold = zcrThreshold;
+        this.subWindowSamples = Math.max(1, sampleRate * noiseWindow.toMillis() / 1000 / NOISE_SUB_WINDOWS);
+        // Until the first window has passed, the floor can only fall below the initial guess
+        this.noiseFloorDb = minEnergyDb - noiseMarginDb;
+        Arrays.fill(subWindowMinima, noiseFloorDb);
+    }
+
+    @Override
+    public boolean isSpeech(byte[] frame, int length) {
+        int samples = length / 2;
+        if (samples == 0) {
+            return false;
+        }
+        double sumSquares = 0;
+        int crossings = 0;
+        int previous = 0;
+        for (int i = 0; i + 1 < length; i += 2) {
+            int sample = (short) ((frame[i] & 0xFF) | (frame[i + 1] << 8));
+            sumSquares += (double) sample * sample;
+            if ((sample ^ previous) < 0) {
+                crossings++;
+            }
+            previous = sample;
+        }
+        double energyDb = 10 * Math.log10(sumSquares / samples / FULL_SCALE_SQUARED + 1e-12);
+        double zcr = (double) crossings / samples;
+
+        double threshold = Math.max(minEnergyDb, noiseFloorDb + noiseMarginDb);
+        boolean speech = energyDb >= threshold
+                || (energyDb >= threshold - noiseMarginDb / 2 && zcr >= zcrThreshold);
+        trackNoiseFloor(energyDb, samples);
+        return speech;
+    }
+
+    private void trackNoiseFloor(double energyDb, int samples) {
+        currentMinimum = Math.min(currentMinimum, energyDb);
+        currentSamples += samples;
+        if (currentSamples >= subWindowSamples) {
+            subWindowMinima[subWindow] = currentMinimum;
+            subWindow = (subWindow + 1) % NOISE_SUB_WINDOWS;
+            currentMinimum = Double.MAX_VALUE;
+            currentSamples = 0;
+        }
+        double floor = currentMinimum;
+        for (double minimum : subWindowMinima) {
+            floor = Math.min(floor, minimum);
+        }
+        noiseFloorDb = floor;
+    }
+}
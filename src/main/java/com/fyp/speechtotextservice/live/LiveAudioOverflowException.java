@@ -0,0 +1,8 @@
+package com.fyp.speechtotextservice.live;
+
+public class LiveAudioOverflowException extends RuntimeException {
+
+    public LiveAudioOverflowException(String sessionId, int capacity) {
+        super("Audio buffer for session " + sessionId + " is full (" + capacity + " frames)");
+    }
+}
@@ -0,0 +1,62 @@
+package com.fyp.speechtotextservice.live;
+
+import com.fyp.speechtotextservice.realtime.RealtimeEvent;
+import io.micrometer.core.instrument.Timer;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongUnaryOperator;
+
+/**
+ * Measures how long a session's audio takes to come back as text: from the arrival of an
+ * utterance's first audio to delivery of its first partial, and from the arrival of its last
+ * audio to delivery of its final. Arrival times are kept for the most recent frames only.
+ */
+class LiveLatencyTracker {
+
+    private static final int WINDOW_FRAMES = 1200;
+
+    private final long[] arrivals = new long[WINDOW_FRAMES];
+    private final long frameMillis;
+    private final Timer firstPartialLatency;
+    private final Timer finalLatency;
+
+    // Written by the upload thread; published to the sender by the volatile count
+    private volatile long framesArrived;
+    // Sender thread only
+    private boolean awaitingFirstPartial = true;
+
+    LiveLatencyTracker(long frameMillis, Timer firstPartialLatency, Timer finalLatency) {
+        this.frameMillis = frameMillis;
+        this.firstPartialLatency = firstPartialLatency;
+        this.finalLatency = finalLatency;
+    }
+
+    /**
+     * Called for every frame, in stream order, as it is taken for upload.
+     */
+    void arrived(long arrivedNanos) {
+        long index = framesArrived;
+        arrivals[(int) (index % WINDOW_FRAMES)] = arrivedNanos;
+        framesArrived = index + 1;
+    }
+
+    void delivered(RealtimeEvent.Transcript transcript, LongUnaryOperator toStreamMillis) {
+        if (transcript.isFinal()) {
+            record(finalLatency, toStreamMillis.applyAsLong(Math.max(0, transcript.audioEndMs() - 1)));
+            awaitingFirstPartial = true;
+        } else if (awaitingFirstPartial && !transcript.text().isEmpty()) {
+            long start = transcript.words().isEmpty() ? transcript.audioStartMs() : transcript.words().get(0).startMs();
+            record(firstPartialLatency, toStreamMillis.applyAsLong(start));
+            awaitingFirstPartial = false;
+        }
+    }
+
+    private void record(Timer timer, long streamMillis) {
+        long frame = streamMillis / frameMillis;
+        long arrived = framesArrived;
+        if (frame < 0 || frame >= arrived || frame < arrived - WINDOW_FRAMES) {
+            return;
+        }
+        timer.record(System.nanoTime() - arrivals[(int) (frame % WINDOW_FRAMES)], TimeUnit.NANOSECONDS);
+    }
+}
@@ -0,0 +1,274 @@
+package com.fyp.speechtotextservice.live;
+
+import com.fyp.speechtotextservice.realtime.RealtimeEvent;
+import com.fyp.speechtotextservice.realtime.RealtimeUpstream;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * State owned by a single /audio-stream connection: its upstream transcriber,
+ * the buffered audio on its way up, the queue of transcripts waiting to go
+ * back to the browser and the threads draining both.
+ */
+@Slf4j
+public class LiveSession {
+
+    @Getter
+    private final String id;
+    @Getter
+    private final WebSocketSession webSocketSession;
+    @Getter
+    private final Instant openedAt = Instant.now();
+
+    private final AudioIngestBuffer inbound;
+    private final VoiceActivityGate voiceGate;
+    private final TranscriptOutbox outbound;
+    private final TranscriptMessageWriter messageWriter;
+    private final LiveLatencyTracker latencyTracker;
+    private final AtomicBoolean closed = new AtomicBoolean();
+    private volatile RealtimeUpstream transcriber;
+    private Thread sender;
+    private Thread uploader;
+
+    LiveSession(WebSocketSession webSocketSession, TranscriptOutbox outbound, TranscriptFormat format,
+                AudioIngestBuffer inbound, VoiceActivityGate voiceGate, LiveLatencyTracker latencyTracker) {
+        this.id = webSocketSession.getId();
+        this.webSocketSession = webSocketSession;
+        this.outbound = outbound;
+        this.inbound = inbound;
+        this.voiceGate = voiceGate;
+        this.latencyTracker = latencyTracker;
+        this.messageWriter = new TranscriptMessageWriter(format, this::toStreamMillis);
+    }
+
+    /**
+     * Starts delivering transcripts to the client and hands the session its upstream transcriber
+     * in the background. Audio arriving before the transcriber is ready waits in the inbound buffer.
+     *
+     * @param transcriberSource returns a connected transcriber, blocking if it has to connect one
+     */
+    public void start(Supplier<RealtimeUpstream> transcriberSource) {
+        this.sender = Thread.ofVirtual().name("live-out-" + id).start(this::drainOutbound);
+        this.uploader = Thread.ofVirtual().name("live-in-" + id).start(() -> {
+            if (attach(transcriberSource)) {
+                drainInbound();
+            }
+        });
+    }
+
+    /**
+     * Buffers audio for the upstream sender; the caller's buffer can be reused once this returns.
+     *
+     * @throws LiveAudioOverflowException if the buffer is full and the overflow policy gives up
+     */
+    public void sendAudio(ByteBuffer audioData) throws InterruptedException {
+        if (!closed.get()) {
+            inbound.write(audioData);
+        }
+    }
+
+    /**
+     * Queues a transcript for the client without blocking the upstream callback. A client that
+     * falls a whole backlog of finals behind is disconnected rather than silently losing text.
+     */
+    public void enqueueTranscript(RealtimeEvent.Transcript transcript) {
+        if (closed.get()) {
+            return;
+        }
+        if (!outbound.offer(transcript)) {
+            log.warn("Transcript backlog full for session {}, closing it", id);
+            try {
+                webSocketSession.close(CloseStatus.SERVICE_OVERLOAD.withReason("Client too slow"));
+            } catch (Exception e) {
+                log.warn("Error closing session {}: {}", id, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Closes the client connection with 1011 when the upstream transcriber fails or ends on its own.
+     * Does nothing once the session is closed, e.g. for the termination that follows our own close.
+     */
+    public void upstreamEnded(String reason) {
+        if (closed.get()) {
+            return;
+        }
+        log.warn("Upstream transcriber for session {} ended, closing the session", id);
+        closeConnection(CloseStatus.SERVER_ERROR.withReason(reason));
+    }
+
+    /**
+     * Converts a time reported by upstream into a time in the audio this client sent.
+     */
+    public long toStreamMillis(long upstreamMillis) {
+        return voiceGate == null ? upstreamMillis : voiceGate.toStreamMillis(upstreamMillis);
+    }
+
+    public int getOutboundDepth() {
+        return outbound.depth();
+    }
+
+    public long getCoalescedPartials() {
+        return outbound.coalescedPartials();
+    }
+
+    public int getInboundDepth() {
+        return inbound.depth();
+    }
+
+    public long getDroppedFrames() {
+        return inbound.droppedFrames();
+    }
+
+    public long getSentFrames() {
+        return inbound.sentFrames();
+    }
+
+    public long getReceivedBytes() {
+        return inbound.receivedBytes();
+    }
+
+    public long getUpstreamBytes() {
+        long frames = voiceGate == null ? inbound.sentFrames() : voiceGate.upstreamFrames();
+        return frames * inbound.frameBytes();
+    }
+
+    public long getSuppressedFrames() {
+        return voiceGate == null ? 0 : voiceGate.suppressedFrames();
+    }
+
+    public long getKeepAliveFrames() {
+        return voiceGate == null ? 0 : voiceGate.keepAliveFrames();
+    }
+
+    /**
+     * Share of received audio that silence suppression kept from going upstream.
+     */
+    public double getSuppressedRatio() {
+        return voiceGate == null ? 0 : voiceGate.suppressedRatio();
+    }
+
+    public boolean isClosed() {
+        return closed.get();
+    }
+
+    private boolean attach(Supplier<RealtimeUpstream> transcriberSource) {
+        try {
+            this.transcriber = transcriberSource.get();
+        } catch (RuntimeException e) {
+            log.warn("No upstream transcriber for session {}: {}", id, e.getMessage());
+            closeConnection(CloseStatus.SERVER_ERROR.withReason("Transcription service unavailable"));
+            return false;
+        }
+        // The session may have closed while the transcriber was being handed over
+        if (closed.get()) {
+            releaseTranscriber();
+            return false;
+        }
+        return true;
+    }
+
+    // A frame that fails to go upstream is dropped and the next one tried; a dead upstream
+    // closes the session through its error event instead
+    private void drainInbound() {
+        try {
+            while (!closed.get()) {
+                AudioIngestBuffer.QueuedFrame queued = inbound.take();
+                byte[] frame = queued.data();
+                RealtimeUpstream current = transcriber;
+                if (current == null) {
+                    inbound.dropped(frame);
+                    break;
+                }
+                latencyTracker.arrived(queued.arrivedNanos());
+                try {
+                    // The upstream is done with the frame once this returns
+                    if (voiceGate != null) {
+                        voiceGate.process(frame, current);
+                    } else {
+                        current.sendAudio(frame, frame.length);
+                    }
+                    inbound.sent(frame);
+                } catch (RuntimeException e) {
+                    log.warn("Error sending audio upstream for session {}: {}", id, e.getMessage());
+                    inbound.dropped(frame);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Transcripts that cannot be delivered make the session useless, so it is closed rather than left half-alive
+    private void drainOutbound() {
+        try {
+            while (!closed.get()) {
+                RealtimeEvent.Transcript transcript = outbound.take();
+                if (!webSocketSession.isOpen()) {
+                    break;
+                }
+                webSocketSession.sendMessage(new TextMessage(messageWriter.write(transcript)));
+                latencyTracker.delivered(transcript, this::toStreamMillis);
+                if (transcript.isFinal() && voiceGate != null) {
+                    voiceGate.forgetBefore(transcript.audioEndMs());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            if (!closed.get()) {
+                log.warn("Error sending transcript to session {}, closing it: {}", id, e.getMessage());
+                closeConnection(CloseStatus.SERVER_ERROR.withReason("Could not deliver transcripts"));
+            }
+        }
+    }
+
+    private void closeConnection(CloseStatus status) {
+        try {
+            webSocketSession.close(status);
+        } catch (Exception e) {
+            log.warn("Error closing session {}: {}", id, e.getMessage());
+        }
+    }
+
+    /**
+     * Releases the upstream transcriber and stops the sender. Safe to call more than once.
+     */
+    void close() {
+        if (!closed.compareAndSet(false, true)) {
+            return;
+        }
+        if (sender != null) {
+            sender.interrupt();
+        }
+        if (uploader != null) {
+            uploader.interrupt();
+        }
+        outbound.clear();
+        inbound.clear();
+        releaseTranscriber();
+    }
+
+    private void releaseTranscriber() {
+        RealtimeUpstream current;
+        synchronized (this) {
+            current = transcriber;
+            transcriber = null;
+        }
+        if (current != null) {
+            try {
+                current.close();
+            } catch (Exception e) {
+                log.warn("Error closing transcriber for session {}: {}", id, e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,8 @@
+package com.fyp.speechtotextservice.live;
+
+public class LiveSessionLimitExceededException extends RuntimeException {
+
+    public LiveSessionLimitExceededException(int maxSessions) {
+        super("Live session limit reached (" + maxSessions + " concurrent sessions)");
+    }
+}
@@ -0,0 +1,199 @@
+package com.fyp.speechtotextservice.live;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ToLongFunction;
+
+/**
+ * Tracks live transcription sessions by WebSocket session id and enforces the
+ * per-node cap on concurrent streams.
+ */
+@Slf4j
+@Component
+public class LiveSessionRegistry {
+
+    private static final String ENDPOINT = "audio-stream";
+
+    private final Map<String, LiveSession> sessions = new ConcurrentHashMap<>();
+    private final LongAdder droppedByClosedSessions = new LongAdder();
+    private final LongAdder suppressedByClosedSessions = new LongAdder();
+    private final LongAdder receivedByClosedSessions = new LongAdder();
+    private final LongAdder upstreamByClosedSessions = new LongAdder();
+    private final AtomicInteger reserved = new AtomicInteger();
+    private final int maxSessions;
+    private final int outboundCapacity;
+    private final double maxPartialRate;
+    private final TranscriptFormat transcriptFormat;
+    private final AudioFramePool framePool;
+    private final int inboundCapacity;
+    private final AudioOverflowPolicy overflowPolicy;
+    private final Duration blockTimeout;
+    private final ObjectProvider<VoiceActivityDetector> voiceDetectors;
+    private final boolean vadEnabled;
+    private final int preRollFrames;
+    private final int hangoverFrames;
+    private final long keepAliveNanos;
+
+    private final Counter openedCounter;
+    private final Counter rejectedCounter;
+    private final Timer durationTimer;
+    private final Timer firstPartialLatency;
+    private final Timer finalLatency;
+
+    public LiveSessionRegistry(MeterRegistry meterRegistry, AudioFramePool framePool,
+                               @Value("${live.sessions.max-concurrent:200}") int maxSessions,
+                               @Value("${live.sessions.outbound-queue-capacity:256}") int outboundCapacity,
+                               @Value("${live.transcripts.max-partial-rate:10}") double maxPartialRate,
+                               @Value("${live.transcripts.format:text}") TranscriptFormat transcriptFormat,
+                               @Value("${live.audio.buffer-frames:50}") int inboundCapacity,
+                               @Value("${live.audio.overflow-policy:drop-oldest}") AudioOverflowPolicy overflowPolicy,
+                               @Value("${live.audio.block-timeout:PT2S}") Duration blockTimeout,
+                               ObjectProvider<VoiceActivityDetector> voiceDetectors,
+                               @Value("${live.vad.enabled:true}") boolean vadEnabled,
+                               @Value("${live.vad.pre-roll:PT0.3S}") Duration preRoll,
+                               @Value("${live.vad.hangover:PT0.5S}") Duration hangover,
+                               @Value("${live.vad.keep-alive-interval:PT5S}") Duration keepAliveInterval) {
+        this.maxSessions = maxSessions;
+        this.outboundCapacity = outboundCapacity;
+        this.maxPartialRate = maxPartialRate;
+        this.transcriptFormat = transcriptFormat;
+        this.framePool = framePool;
+        this.inboundCapacity = inboundCapacity;
+        this.overflowPolicy = overflowPolicy;
+        this.blockTimeout = blockTimeout;
+        this.voiceDetectors = voiceDetectors;
+        this.vadEnabled = vadEnabled;
+        this.preRollFrames = (int) (preRoll.toMillis() / framePool.getFrameMillis());
+        this.hangoverFrames = (int) (hangover.toMillis() / framePool.getFrameMillis());
+        this.keepAliveNanos = keepAliveInterval.toNanos();
+        Gauge.builder("live.sessions.active", sessions, Map::size)
+                .description("Live transcription sessions currently open")
+                .register(meterRegistry);
+        Gauge.builder("live.sessions.max", () -> this.maxSessions)
+                .description("Configured cap on concurrent live sessions")
+                .register(meterRegistry);
+        this.openedCounter = Counter.builder("live.sessions.opened").register(meterRegistry);
+        this.rejectedCounter = Counter.builder("live.sessions.rejected").register(meterRegistry);
+        this.durationTimer = Timer.builder("live.sessions.duration").register(meterRegistry);
+        FunctionCounter.builder("live.audio.frames.dropped", sessions,
+                        open -> total(open, droppedByClosedSessions, LiveSession::getDroppedFrames))
+                .description("Audio frames discarded because upstream fell behind")
+                .register(meterRegistry);
+        FunctionCounter.builder("live.audio.received", sessions,
+                        open -> total(open, receivedByClosedSessions, LiveSession::getReceivedBytes))
+                .description("Audio bytes received from live clients")
+                .baseUnit("bytes")
+                .tag("endpoint", ENDPOINT)
+                .register(meterRegistry);
+        FunctionCounter.builder("live.audio.upstream", sessions,
+                        open -> total(open, upstreamByClosedSessions, LiveSession::getUpstreamBytes))
+                .description("Audio bytes sent to the realtime transcription service")
+                .baseUnit("bytes")
+                .tag("endpoint", ENDPOINT)
+                .register(meterRegistry);
+        this.firstPartialLatency = latencyTimer(meterRegistry, "first_partial");
+        this.finalLatency = latencyTimer(meterRegistry, "final");
+        FunctionCounter.builder("live.audio.frames.suppressed", sessions,
+                        open -> total(open, suppressedByClosedSessions, LiveSession::getSuppressedFrames))
+                .description("Audio frames withheld from upstream as silence")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Creates and registers a session for the given connection.
+     *
+     * @throws LiveSessionLimitExceededException if the node is already at capacity
+     */
+    public LiveSession register(WebSocketSession webSocketSession) {
+        if (reserved.incrementAndGet() > maxSessions) {
+            reserved.decrementAndGet();
+            rejectedCounter.increment();
+            throw new LiveSessionLimitExceededException(maxSessions);
+        }
+        AudioIngestBuffer inbound = new AudioIngestBuffer(webSocketSession.getId(), framePool,
+                inboundCapacity, overflowPolicy, blockTimeout);
+        VoiceActivityGate voiceGate = vadEnabled
+                ? new VoiceActivityGate(voiceDetectors.getObject(), framePool.getFrameBytes(),
+                        framePool.getFrameMillis(), preRollFrames, hangoverFrames, keepAliveNanos)
+                : null;
+        LiveSession session = new LiveSession(webSocketSession, new TranscriptOutbox(outboundCapacity, maxPartialRate),
+                transcriptFormat, inbound, voiceGate,
+                new LiveLatencyTracker(framePool.getFrameMillis(), firstPartialLatency, finalLatency));
+        sessions.put(session.getId(), session);
+        openedCounter.increment();
+        log.info("Registered live session {} ({} active)", session.getId(), sessions.size());
+        return session;
+    }
+
+    public LiveSession get(String sessionId) {
+        return sessions.get(sessionId);
+    }
+
+    /**
+     * Removes and closes the session. Does nothing if it was already removed.
+     */
+    public void remove(String sessionId) {
+        LiveSession session = sessions.remove(sessionId);
+        if (session == null) {
+            return;
+        }
+        reserved.decrementAndGet();
+        session.close();
+        droppedByClosedSessions.add(session.getDroppedFrames());
+        suppressedByClosedSessions.add(session.getSuppressedFrames());
+        receivedByClosedSessions.add(session.getReceivedBytes());
+        upstreamByClosedSessions.add(session.getUpstreamBytes());
+        durationTimer.record(Duration.between(session.getOpenedAt(), Instant.now()));
+        log.info("Removed live session {} ({} active)", sessionId, sessions.size());
+    }
+
+    public Collection<LiveSession> getSessions() {
+        return Collections.unmodifiableCollection(sessions.values());
+    }
+
+    public int getActiveCount() {
+        return sessions.size();
+    }
+
+    public int getMaxSessions() {
+        return maxSessions;
+    }
+
+    // Audio in to transcript out, measured when the transcript is written to the client
+    private static Timer latencyTimer(MeterRegistry meterRegistry, String transcript) {
+        return Timer.builder("live.latency")
+                .tag("endpoint", ENDPOINT)
+                .tag("transcript", transcript)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    private static double total(Map<String, LiveSession> open, LongAdder closed, ToLongFunction<LiveSession> perSession) {
+        long total = closed.sum();
+        for (LiveSession session : open.values()) {
+            total += perSession.applyAsLong(session);
+        }
+        return total;
+    }
+
+    public void closeAll() {
+        sessions.keySet().forEach(this::remove);
+    }
+}
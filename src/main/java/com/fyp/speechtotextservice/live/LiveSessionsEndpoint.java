@@ -0,0 +1,52 @@
+package com.fyp.speechtotextservice.live;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Exposes per-session details under /actuator/livesessions. Session ids are left out: audio
+ * only reaches a session over its own connection, but the ids are still nobody else's business.
+ */
+@Component
+@Endpoint(id = "livesessions")
+public class LiveSessionsEndpoint {
+
+    private final LiveSessionRegistry registry;
+
+    public LiveSessionsEndpoint(LiveSessionRegistry registry) {
+        this.registry = registry;
+    }
+
+    @ReadOperation
+    public Map<String, Object> sessions() {
+        List<Map<String, Object>> sessions = registry.getSessions().stream()
+                .map(this::describe)
+                .toList();
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("active", registry.getActiveCount());
+        body.put("max", registry.getMaxSessions());
+        body.put("sessions", sessions);
+        return body;
+    }
+
+    private Map<String, Object> describe(LiveSession session) {
+        Map<String, Object> details = new LinkedHashMap<>();
+        details.put("openedAt", session.getOpenedAt().toString());
+        details.put("outboundDepth", session.getOutboundDepth());
+        details.put("coalescedPartials", session.getCoalescedPartials());
+        details.put("inboundDepth", session.getInboundDepth());
+        details.put("receivedBytes", session.getReceivedBytes());
+        details.put("upstreamBytes", session.getUpstreamBytes());
+        details.put("sentFrames", session.getSentFrames());
+        details.put("droppedFrames", session.getDroppedFrames());
+        details.put("suppressedFrames", session.getSuppressedFrames());
+        details.put("keepAliveFrames", session.getKeepAliveFrames());
+        details.put("suppressedRatio", session.getSuppressedRatio());
+        return details;
+    }
+}
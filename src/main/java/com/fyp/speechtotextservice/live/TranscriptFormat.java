@@ -0,0 +1,11 @@
+package com.fyp.speechtotextservice.live;
+
+/**
+ * How transcripts are written to live clients.
+ */
+public enum TranscriptFormat {
+    /** "PARTIAL: text" and "FINAL: text" lines carrying the full text every time. */
+    TEXT,
+    /** JSON messages; partials carry only the changed suffix and its words with timings. */
+    JSON
+}
@@ -0,0 +1,94 @@
+package com.fyp.speechtotextservice.live;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fyp.speechtotextservice.realtime.RealtimeEvent;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.List;
+import java.util.function.LongUnaryOperator;
+
+/**
+ * Renders transcripts for one client. In JSON mode a partial is sent as a delta against the
+ * partial the client last received: {@code keep} characters of it stay, {@code append} follows,
+ * and {@code words} lists only the words from the first one that changed. Finals carry the
+ * full text and all words, and reset the baseline for the next utterance.
+ */
+class TranscriptMessageWriter {
+
+    private static final JsonFactory JSON = new JsonFactory();
+
+    private final TranscriptFormat format;
+    private final LongUnaryOperator toStreamMillis;
+    private String lastPartialText = "";
+    private List<RealtimeEvent.Word> lastPartialWords = List.of();
+
+    TranscriptMessageWriter(TranscriptFormat format, LongUnaryOperator toStreamMillis) {
+        this.format = format;
+        this.toStreamMillis = toStreamMillis;
+    }
+
+    String write(RealtimeEvent.Transcript transcript) throws IOException {
+        if (format == TranscriptFormat.TEXT) {
+            return (transcript.isFinal() ? "FINAL: " : "PARTIAL: ") + transcript.text();
+        }
+
+        StringWriter out = new StringWriter(64 + transcript.text().length());
+        try (JsonGenerator json = JSON.createGenerator(out)) {
+            json.writeStartObject();
+            json.writeStringField("type", transcript.isFinal() ? "final" : "partial");
+            json.writeNumberField("start", toStreamMillis.applyAsLong(transcript.audioStartMs()));
+            json.writeNumberField("end", toStreamMillis.applyAsLong(transcript.audioEndMs()));
+            List<RealtimeEvent.Word> words = transcript.words();
+            if (transcript.isFinal()) {
+                json.writeStringField("text", transcript.text());
+                writeWords(json, words, 0);
+                lastPartialText = "";
+                lastPartialWords = List.of();
+            } else {
+                int keep = commonPrefix(lastPartialText, transcript.text());
+                json.writeNumberField("keep", keep);
+                json.writeStringField("append", transcript.text().substring(keep));
+                writeWords(json, words, firstChangedWord(lastPartialWords, words));
+                lastPartialText = transcript.text();
+                lastPartialWords = words;
+            }
+            json.writeEndObject();
+        }
+        return out.toString();
+    }
+
+    private void writeWords(JsonGenerator json, List<RealtimeEvent.Word> words, int from) throws IOException {
+        json.writeNumberField("wordsFrom", from);
+        json.writeArrayFieldStart("words");
+        for (int i = from; i < words.size(); i++) {
+            RealtimeEvent.Word word = words.get(i);
+            json.writeStartObject();
+            json.writeStringField("text", word.text());
+            json.writeNumberField("start", toStreamMillis.applyAsLong(word.startMs()));
+            json.writeNumberField("end", toStreamMillis.applyAsLong(word.endMs()));
+            json.writeNumberField("confidence", word.confidence());
+            json.writeEndObject();
+        }
+        json.writeEndArray();
+    }
+
+    private static int commonPrefix(String previous, String current) {
+        int length = Math.min(previous.length(), current.length());
+        int i = 0;
+        while (i < length && previous.charAt(i) == current.charAt(i)) {
+            i++;
+        }
+        return i;
+    }
+
+    private static int firstChangedWord(List<RealtimeEvent.Word> previous, List<RealtimeEvent.Word> current) {
+        int length = Math.min(previous.size(), current.size());
+        int i = 0;
+        while (i < length && previous.get(i).equals(current.get(i))) {
+            i++;
+        }
+        return i;
+    }
+}
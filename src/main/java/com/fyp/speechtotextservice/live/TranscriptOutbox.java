@@ -0,0 +1,115 @@
+package com.fyp.speechtotextservice.live;
+
+import com.fyp.speechtotextservice.realtime.RealtimeEvent;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Transcripts waiting for a live client. Finals queue up in order and are never dropped;
+ * partials share a single slot, so a newer partial replaces one the client has not seen yet
+ * and a final replaces the partial it completes. Partials leave no faster than the configured
+ * rate, however quickly upstream produces them.
+ */
+class TranscriptOutbox {
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+    private final Deque<RealtimeEvent.Transcript> finals = new ArrayDeque<>();
+    private final int finalsCapacity;
+    private final long minPartialIntervalNanos;
+
+    private RealtimeEvent.Transcript pendingPartial;
+    private long lastPartialNanos;
+    private volatile long coalescedPartials;
+
+    TranscriptOutbox(int finalsCapacity, double maxPartialsPerSecond) {
+        this.finalsCapacity = finalsCapacity;
+        this.minPartialIntervalNanos = maxPartialsPerSecond > 0 ? (long) (1e9 / maxPartialsPerSecond) : 0;
+        this.lastPartialNanos = System.nanoTime() - minPartialIntervalNanos;
+    }
+
+    /**
+     * @return false if the client is so far behind that the finals backlog is full
+     */
+    boolean offer(RealtimeEvent.Transcript transcript) {
+        lock.lock();
+        try {
+            if (transcript.isFinal()) {
+                if (finals.size() >= finalsCapacity) {
+                    return false;
+                }
+                finals.addLast(transcript);
+                if (pendingPartial != null) {
+                    pendingPartial = null;
+                    coalescedPartials++;
+                }
+            } else {
+                if (pendingPartial != null) {
+                    coalescedPartials++;
+                }
+                pendingPartial = transcript;
+            }
+            changed.signal();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Waits for the next transcript to deliver: finals first, then the latest partial once the
+     * rate limit allows it.
+     */
+    RealtimeEvent.Transcript take() throws InterruptedException {
+        lock.lock();
+        try {
+            while (true) {
+                RealtimeEvent.Transcript next = finals.pollFirst();
+                if (next != null) {
+                    return next;
+                }
+                if (pendingPartial == null) {
+                    changed.await();
+                    continue;
+                }
+                long wait = lastPartialNanos + minPartialIntervalNanos - System.nanoTime();
+                if (wait <= 0) {
+                    next = pendingPartial;
+                    pendingPartial = null;
+                    lastPartialNanos = System.nanoTime();
+                    return next;
+                }
+                changed.await(wait, TimeUnit.NANOSECONDS);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    int depth() {
+        lock.lock();
+        try {
+            return finals.size() + (pendingPartial == null ? 0 : 1);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    long coalescedPartials() {
+        return coalescedPartials;
+    }
+
+    void clear() {
+        lock.lock();
+        try {
+            finals.clear();
+            pendingPartial = null;
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,10 @@
+package com.fyp.speechtotextservice.live;
+
+/**
+ * Classifies PCM16 mono frames as speech or not. Each live session gets its own instance, so
+ * implementations may keep state such as a noise estimate; register them as prototype beans.
+ */
+public interface VoiceActivityDetector {
+
+    boolean isSpeech(byte[] frame, int length);
+}
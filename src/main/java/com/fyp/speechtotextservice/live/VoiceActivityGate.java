@@ -0,0 +1,150 @@
+package com.fyp.speechtotextservice.live;
+
+import com.fyp.speechtotextservice.realtime.RealtimeUpstream;
+
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Decides which frames of a session go upstream. Speech is sent together with the frames
+ * just before it (pre-roll) and followed by a few more frames after it ends (hangover), so
+ * onsets and trailing syllables are not clipped. During longer silence only an occasional
+ * frame of digital silence is sent to keep the upstream session alive. Because upstream only
+ * sees part of the stream, its timestamps are mapped back through the recorded offsets.
+ */
+class VoiceActivityGate {
+
+    private final VoiceActivityDetector detector;
+    private final byte[][] preRoll;
+    private final int hangoverFrames;
+    private final long keepAliveNanos;
+    private final byte[] silence;
+    private final long frameMillis;
+    // Upstream time at which each offset starts to apply -> stream time minus upstream time
+    private final NavigableMap<Long, Long> offsets = new ConcurrentSkipListMap<>(Map.of(0L, 0L));
+    private volatile long upstreamFrames;
+    private long lastOffsetFrames;
+
+    private int preRollStart;
+    private int preRollCount;
+    private boolean active;
+    private int hangoverLeft;
+    private long lastSentNanos = System.nanoTime();
+
+    // Written by the session's upload thread only
+    private volatile long totalFrames;
+    private volatile long suppressedFrames;
+    private volatile long keepAliveFrames;
+
+    VoiceActivityGate(VoiceActivityDetector detector, int frameBytes, long frameMillis, int preRollFrames,
+                      int hangoverFrames, long keepAliveNanos) {
+        this.detector = detector;
+        this.preRoll = new byte[preRollFrames][frameBytes];
+        this.hangoverFrames = hangoverFrames;
+        this.keepAliveNanos = keepAliveNanos;
+        this.silence = new byte[frameBytes];
+        this.frameMillis = frameMillis;
+    }
+
+    /**
+     * Sends the frame upstream if it is, or is near, speech. The frame is not kept.
+     */
+    void process(byte[] frame, RealtimeUpstream upstream) {
+        long streamFrame = totalFrames++;
+        if (detector.isSpeech(frame, frame.length)) {
+            if (!active) {
+                flushPreRoll(upstream, streamFrame);
+                active = true;
+            }
+            hangoverLeft = hangoverFrames;
+            send(frame, upstream, streamFrame);
+        } else if (active && hangoverLeft > 0) {
+            hangoverLeft--;
+            active = hangoverLeft > 0;
+            send(frame, upstream, streamFrame);
+        } else {
+            active = false;
+            suppressedFrames++;
+            if (System.nanoTime() - lastSentNanos >= keepAliveNanos) {
+                keepAliveFrames++;
+                send(silence, upstream, streamFrame);
+                // Upstream already has a frame at this stream time, so pre-roll restarts after it
+                preRollStart = 0;
+                preRollCount = 0;
+            } else {
+                remember(frame);
+            }
+        }
+    }
+
+    /**
+     * Converts a time in the audio upstream received into a time in the session's stream.
+     */
+    long toStreamMillis(long upstreamMillis) {
+        Map.Entry<Long, Long> offset = offsets.floorEntry(upstreamMillis);
+        // Earlier than every offset still kept, which only happens for audio already finalised
+        return upstreamMillis + (offset != null ? offset : offsets.firstEntry()).getValue();
+    }
+
+    /**
+     * Drops the offsets that only apply before the given upstream time. Called once a final
+     * transcript ending there has been delivered, as later transcripts never reach back before it.
+     */
+    void forgetBefore(long upstreamMillis) {
+        Long covering = offsets.floorKey(upstreamMillis);
+        if (covering != null) {
+            offsets.headMap(covering, false).clear();
+        }
+    }
+
+    private void remember(byte[] frame) {
+        if (preRoll.length == 0) {
+            return;
+        }
+        int slot = (preRollStart + preRollCount) % preRoll.length;
+        System.arraycopy(frame, 0, preRoll[slot], 0, Math.min(frame.length, preRoll[slot].length));
+        if (preRollCount < preRoll.length) {
+            preRollCount++;
+        } else {
+            preRollStart = (preRollStart + 1) % preRoll.length;
+        }
+    }
+
+    private void flushPreRoll(RealtimeUpstream upstream, long streamFrame) {
+        for (int i = 0; i < preRollCount; i++) {
+            send(preRoll[(preRollStart + i) % preRoll.length], upstream, streamFrame - preRollCount + i);
+        }
+        suppressedFrames -= preRollCount;
+        preRollStart = 0;
+        preRollCount = 0;
+    }
+
+    private void send(byte[] frame, RealtimeUpstream upstream, long streamFrame) {
+        long offsetFrames = streamFrame - upstreamFrames;
+        if (offsetFrames != lastOffsetFrames) {
+            offsets.put(upstreamFrames * frameMillis, offsetFrames * frameMillis);
+            lastOffsetFrames = offsetFrames;
+        }
+        upstreamFrames++;
+        upstream.sendAudio(frame, frame.length);
+        lastSentNanos = System.nanoTime();
+    }
+
+    long suppressedFrames() {
+        return suppressedFrames;
+    }
+
+    long upstreamFrames() {
+        return upstreamFrames;
+    }
+
+    long keepAliveFrames() {
+        return keepAliveFrames;
+    }
+
+    double suppressedRatio() {
+        long total = totalFrames;
+        return total == 0 ? 0 : (double) suppressedFrames / total;
+    }
+}
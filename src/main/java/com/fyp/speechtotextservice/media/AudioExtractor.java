@@ -0,0 +1,149 @@
+package com.fyp.speechtotextservice.media;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.io.BufferedOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PipedOutputStream;
+
+/**
+ * Demuxer stage in front of the upload: pulls the audio track out of MP4/MOV and
+ * WebM/Matroska uploads and re-wraps it in the same container, so only the audio goes
+ * upstream. The rewrite runs on a virtual thread feeding a pipe, so the upload starts
+ * immediately and the media is never copied into memory as a whole. Anything else, or
+ * anything the parsers are unsure about, passes through untouched.
+ */
+@Slf4j
+@Component
+public class AudioExtractor {
+
+    private static final int PIPE_SIZE = 64 * 1024;
+
+    @FunctionalInterface
+    private interface Writer {
+        void write(OutputStream out) throws IOException;
+    }
+
+    private final boolean enabled;
+    private final Mp4AudioExtractor mp4;
+    private final MatroskaAudioExtractor matroska;
+    private final MeterRegistry meterRegistry;
+
+    public AudioExtractor(MeterRegistry meterRegistry,
+                          @Value("${media.audio-extraction.enabled:true}") boolean enabled,
+                          @Value("${media.audio-extraction.max-header-size:16MB}") DataSize maxHeaderSize) {
+        this.meterRegistry = meterRegistry;
+        this.enabled = enabled;
+        this.mp4 = new Mp4AudioExtractor((int) maxHeaderSize.toBytes());
+        this.matroska = new MatroskaAudioExtractor((int) maxHeaderSize.toBytes());
+    }
+
+    public ExtractedAudio extract(MediaSource source) throws IOException {
+        if (!enabled) {
+            return passThrough(source, "other");
+        }
+        byte[] head = readHead(source);
+        try {
+            if (Mp4AudioExtractor.matches(head)) {
+                Mp4AudioExtractor.Plan plan = mp4.plan(source);
+                if (plan != null) {
+                    return pipe(source, "mp4", plan.outputLength(), out -> mp4.write(plan, source, out));
+                }
+                return passThrough(source, "mp4");
+            }
+            if (MatroskaAudioExtractor.matches(head)) {
+                MatroskaAudioExtractor.Probe probe = matroska.probe(source);
+                if (probe != null) {
+                    return pipe(source, "matroska", -1, out -> matroska.write(probe, source, out));
+                }
+                return passThrough(source, "matroska");
+            }
+        } catch (IOException | RuntimeException e) {
+            // A container we cannot make sense of is still worth sending as is
+            log.warn("Could not parse media container, uploading it unchanged: {}", e.getMessage());
+        }
+        return passThrough(source, "other");
+    }
+
+    private ExtractedAudio passThrough(MediaSource source, String container) throws IOException {
+        Counter.builder("media.audio_extraction").tag("container", container).tag("result", "passthrough")
+                .register(meterRegistry).increment();
+        return new ExtractedAudio(source.open(), source.size(), container, false);
+    }
+
+    private ExtractedAudio pipe(MediaSource source, String container, long length, Writer writer) throws IOException {
+        PipedAudioInputStream in = new PipedAudioInputStream(PIPE_SIZE);
+        PipedOutputStream pipe = new PipedOutputStream(in);
+        Thread.ofVirtual().name("audio-extract-" + container).start(() -> {
+            CountingOutputStream counting = new CountingOutputStream(new BufferedOutputStream(pipe, PIPE_SIZE));
+            try {
+                writer.write(counting);
+                counting.flush();
+                recordSaved(container, source.size(), counting.count);
+            } catch (IOException e) {
+                log.warn("Audio extraction from {} failed: {}", container, e.getMessage());
+                in.fail(e);
+            } catch (RuntimeException | Error e) {
+                // A malformed container must not look like a clean end of the audio
+                log.warn("Audio extraction from {} failed: {}", container, e.toString());
+                in.fail(new IOException("Audio extraction from " + container + " failed", e));
+            } finally {
+                try {
+                    pipe.close();
+                } catch (IOException ignored) {
+                    // reader already gone
+                }
+            }
+        });
+        return new ExtractedAudio(in, length, container, true);
+    }
+
+    private void recordSaved(String container, long originalSize, long extractedSize) {
+        Counter.builder("media.audio_extraction").tag("container", container).tag("result", "extracted")
+                .register(meterRegistry).increment();
+        if (originalSize > 0) {
+            long saved = Math.max(0, originalSize - extractedSize);
+            DistributionSummary.builder("media.audio_extraction.bytes_saved")
+                    .baseUnit("bytes")
+                    .tag("container", container)
+                    .register(meterRegistry)
+                    .record(saved);
+            log.info("Extracted {} audio: {} of {} bytes, {} saved", container, extractedSize, originalSize, saved);
+        }
+    }
+
+    private static byte[] readHead(MediaSource source) throws IOException {
+        try (InputStream in = source.open()) {
+            return in.readNBytes(12);
+        }
+    }
+
+    private static final class CountingOutputStream extends FilterOutputStream {
+        private long count;
+
+        private CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+}
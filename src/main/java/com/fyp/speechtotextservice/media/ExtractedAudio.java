@@ -0,0 +1,14 @@
+package com.fyp.speechtotextservice.media;
+
+import java.io.InputStream;
+
+/**
+ * Audio ready for upload.
+ *
+ * @param stream    the bytes to upload; the caller closes it
+ * @param length    number of bytes in the stream, or -1 if only known once it has been read
+ * @param container detected container, e.g. "mp4", "matroska" or "other"
+ * @param extracted true if the stream is a re-wrapped audio track, false if it is the original media
+ */
+public record ExtractedAudio(InputStream stream, long length, String container, boolean extracted) {
+}
@@ -0,0 +1,363 @@
+package com.fyp.speechtotextservice.media;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Set;
+
+/**
+ * Rewrites a Matroska/WebM file so it holds only its first audio track, in one streaming pass.
+ * Video blocks are skipped without being buffered; each cluster's audio blocks are collected so
+ * the cluster can be written with its new size. Seek heads and cues are dropped because their
+ * offsets no longer apply, and the segment is written with an unknown size.
+ */
+class MatroskaAudioExtractor {
+
+    private static final long EBML = 0x1A45DFA3L;
+    private static final long SEGMENT = 0x18538067L;
+    private static final long SEEK_HEAD = 0x114D9B74L;
+    private static final long INFO = 0x1549A966L;
+    private static final long TRACKS = 0x1654AE6BL;
+    private static final long CLUSTER = 0x1F43B675L;
+    private static final long CUES = 0x1C53BB6BL;
+    private static final long ATTACHMENTS = 0x1941A469L;
+    private static final long CHAPTERS = 0x1043A770L;
+    private static final long TAGS = 0x1254C367L;
+    private static final long VOID = 0xECL;
+
+    private static final long TRACK_ENTRY = 0xAEL;
+    private static final long TRACK_NUMBER = 0xD7L;
+    private static final long TRACK_TYPE = 0x83L;
+    private static final int TRACK_TYPE_AUDIO = 2;
+
+    private static final long TIMECODE = 0xE7L;
+    private static final long SIMPLE_BLOCK = 0xA3L;
+    private static final long BLOCK_GROUP = 0xA0L;
+    private static final long BLOCK = 0xA1L;
+
+    private static final Set<Long> TOP_LEVEL = Set.of(SEEK_HEAD, INFO, TRACKS, CLUSTER, CUES, ATTACHMENTS, CHAPTERS, TAGS);
+    private static final Set<Long> DROPPED = Set.of(SEEK_HEAD, CUES, ATTACHMENTS, TAGS, VOID);
+
+    private static final long UNKNOWN_SIZE = -1;
+    private static final int COPY_BUFFER_SIZE = 64 * 1024;
+
+    private final int probeLimit;
+
+    MatroskaAudioExtractor(int probeLimit) {
+        this.probeLimit = probeLimit;
+    }
+
+    static boolean matches(byte[] head) {
+        return head.length >= 4 && (head[0] & 0xFF) == 0x1A && (head[1] & 0xFF) == 0x45
+                && (head[2] & 0xFF) == 0xDF && (head[3] & 0xFF) == 0xA3;
+    }
+
+    /**
+     * Reads up to the Tracks element and returns the audio-only track list, or null if the file
+     * should be uploaded as is (no audio, audio only, Tracks not found near the start, or Tracks
+     * whose sizes do not add up).
+     */
+    Probe probe(MediaSource source) throws IOException {
+        try (CountingInputStream in = new CountingInputStream(new BufferedInputStream(source.open(), COPY_BUFFER_SIZE))) {
+            if (readId(in) != EBML) {
+                return null;
+            }
+            in.skipFully(readSize(in));
+            if (readId(in) != SEGMENT) {
+                return null;
+            }
+            readSize(in);
+            while (in.position() < probeLimit) {
+                long id = readId(in);
+                if (id == -1 || id == CLUSTER) {
+                    return null;
+                }
+                long size = readSize(in);
+                if (size == UNKNOWN_SIZE) {
+                    return null;
+                }
+                if (id == TRACKS) {
+                    // The size comes from the file, so it is checked before anything is allocated for it
+                    return size > probeLimit ? null : filterTracks(in.readBytes(size));
+                }
+                in.skipFully(size);
+            }
+            return null;
+        }
+    }
+
+    void write(Probe probe, MediaSource source, OutputStream out) throws IOException {
+        byte[] buffer = new byte[COPY_BUFFER_SIZE];
+        try (CountingInputStream in = new CountingInputStream(new BufferedInputStream(source.open(), COPY_BUFFER_SIZE))) {
+            ElementReader reader = new ElementReader(in);
+
+            readId(in);
+            long ebmlSize = readSize(in);
+            writeId(out, EBML);
+            writeSize(out, ebmlSize);
+            in.copyTo(out, ebmlSize, buffer);
+
+            readId(in);
+            long segmentSize = readSize(in);
+            long segmentEnd = segmentSize == UNKNOWN_SIZE ? Long.MAX_VALUE : in.position() + segmentSize;
+            writeId(out, SEGMENT);
+            out.write(new byte[]{0x01, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF});
+
+            ByteArrayOutputStream cluster = new ByteArrayOutputStream(COPY_BUFFER_SIZE);
+            while (in.position() < segmentEnd) {
+                long id = reader.nextId();
+                if (id == -1) {
+                    break;
+                }
+                long size = readSize(in);
+                if (id == CLUSTER) {
+                    copyCluster(reader, in, size, probe.audioTrackNumber, cluster, out, buffer);
+                } else if (size == UNKNOWN_SIZE) {
+                    throw new IOException("Unsupported unknown-size element " + Long.toHexString(id));
+                } else if (id == TRACKS) {
+                    in.skipFully(size);
+                    writeId(out, TRACKS);
+                    writeSize(out, probe.tracks.length);
+                    out.write(probe.tracks);
+                } else if (DROPPED.contains(id)) {
+                    in.skipFully(size);
+                } else {
+                    writeId(out, id);
+                    writeSize(out, size);
+                    in.copyTo(out, size, buffer);
+                }
+            }
+        }
+    }
+
+    private void copyCluster(ElementReader reader, CountingInputStream in, long size, long audioTrack,
+                             ByteArrayOutputStream cluster, OutputStream out, byte[] buffer) throws IOException {
+        cluster.reset();
+        boolean hasBlocks = false;
+        long end = size == UNKNOWN_SIZE ? Long.MAX_VALUE : in.position() + size;
+        while (in.position() < end) {
+            long id = reader.nextId();
+            if (id == -1) {
+                break;
+            }
+            if (size == UNKNOWN_SIZE && TOP_LEVEL.contains(id)) {
+                reader.pushBack(id);
+                break;
+            }
+            long childSize = readSize(in);
+            if (childSize == UNKNOWN_SIZE) {
+                throw new IOException("Unsupported unknown-size element " + Long.toHexString(id));
+            }
+            if (id == TIMECODE) {
+                writeId(cluster, id);
+                writeSize(cluster, childSize);
+                in.copyTo(cluster, childSize, buffer);
+            } else if (id == SIMPLE_BLOCK) {
+                hasBlocks |= copyBlockIfAudio(in, id, childSize, audioTrack, cluster, buffer);
+            } else if (id == BLOCK_GROUP) {
+                hasBlocks |= copyBlockGroupIfAudio(in, childSize, audioTrack, cluster, buffer);
+            } else {
+                in.skipFully(childSize);
+            }
+        }
+        if (hasBlocks) {
+            writeId(out, CLUSTER);
+            writeSize(out, cluster.size());
+            cluster.writeTo(out);
+        }
+    }
+
+    private boolean copyBlockGroupIfAudio(CountingInputStream in, long size, long audioTrack,
+                                          ByteArrayOutputStream cluster, byte[] buffer) throws IOException {
+        ByteArrayOutputStream group = new ByteArrayOutputStream();
+        long end = in.position() + size;
+        boolean audio = false;
+        while (in.position() < end) {
+            long id = readId(in);
+            long childSize = readSize(in);
+            if (id == BLOCK) {
+                if (!copyBlockIfAudio(in, id, childSize, audioTrack, group, buffer)) {
+                    in.skipFully(end - in.position());
+                    return false;
+                }
+                audio = true;
+            } else {
+                writeId(group, id);
+                writeSize(group, childSize);
+                in.copyTo(group, childSize, buffer);
+            }
+        }
+        if (audio) {
+            writeId(cluster, BLOCK_GROUP);
+            writeSize(cluster, group.size());
+            group.writeTo(cluster);
+        }
+        return audio;
+    }
+
+    // Blocks start with the track number as a vint; non-audio blocks are skipped unread
+    private boolean copyBlockIfAudio(CountingInputStream in, long id, long size, long audioTrack,
+                                     OutputStream target, byte[] buffer) throws IOException {
+        int first = in.readByte();
+        int length = vintLength(first);
+        byte[] trackBytes = new byte[length];
+        trackBytes[0] = (byte) first;
+        long track = first & (0xFF >> length);
+        for (int i = 1; i < length; i++) {
+            int next = in.readByte();
+            trackBytes[i] = (byte) next;
+            track = (track << 8) | next;
+        }
+        if (track != audioTrack) {
+            in.skipFully(size - length);
+            return false;
+        }
+        writeId(target, id);
+        writeSize(target, size);
+        target.write(trackBytes);
+        in.copyTo(target, size - length, buffer);
+        return true;
+    }
+
+    private static Probe filterTracks(byte[] tracks) throws IOException {
+        CountingInputStream in = new CountingInputStream(new ByteArrayInputStream(tracks));
+        byte[] audioEntry = null;
+        long audioTrackNumber = -1;
+        int entries = 0;
+        while (in.position() < tracks.length) {
+            long id = readId(in);
+            long size = readSize(in);
+            if (size < 0 || size > tracks.length - in.position()) {
+                return null;
+            }
+            byte[] payload = in.readBytes(size);
+            if (id != TRACK_ENTRY) {
+                continue;
+            }
+            entries++;
+            long[] numberAndType = trackNumberAndType(payload);
+            if (numberAndType == null) {
+                return null;
+            }
+            if (audioEntry == null && numberAndType[1] == TRACK_TYPE_AUDIO) {
+                audioEntry = payload;
+                audioTrackNumber = numberAndType[0];
+            }
+        }
+        if (audioEntry == null || entries == 1) {
+            return null;
+        }
+        ByteArrayOutputStream filtered = new ByteArrayOutputStream(audioEntry.length + 16);
+        writeId(filtered, TRACK_ENTRY);
+        writeSize(filtered, audioEntry.length);
+        filtered.write(audioEntry);
+        return new Probe(audioTrackNumber, filtered.toByteArray());
+    }
+
+    // Returns null if a child claims more bytes than the entry holds
+    private static long[] trackNumberAndType(byte[] entry) throws IOException {
+        CountingInputStream in = new CountingInputStream(new ByteArrayInputStream(entry));
+        long number = -1;
+        long type = -1;
+        while (in.position() < entry.length) {
+            long id = readId(in);
+            long size = readSize(in);
+            if (size < 0 || size > entry.length - in.position()) {
+                return null;
+            }
+            byte[] value = in.readBytes(size);
+            if (id == TRACK_NUMBER || id == TRACK_TYPE) {
+                long unsigned = 0;
+                for (byte b : value) {
+                    unsigned = (unsigned << 8) | (b & 0xFF);
+                }
+                if (id == TRACK_NUMBER) {
+                    number = unsigned;
+                } else {
+                    type = unsigned;
+                }
+            }
+        }
+        return new long[]{number, type};
+    }
+
+    private static int vintLength(int first) throws IOException {
+        if (first == 0) {
+            throw new IOException("Invalid EBML variable-length integer");
+        }
+        return Integer.numberOfLeadingZeros(first) - 23;
+    }
+
+    // Element ids keep their length marker; returns -1 at end of stream
+    private static long readId(CountingInputStream in) throws IOException {
+        int first = in.read();
+        if (first == -1) {
+            return -1;
+        }
+        int length = vintLength(first);
+        if (length > 4) {
+            throw new IOException("Invalid EBML element id");
+        }
+        long id = first;
+        for (int i = 1; i < length; i++) {
+            id = (id << 8) | in.readByte();
+        }
+        return id;
+    }
+
+    private static long readSize(CountingInputStream in) throws IOException {
+        int first = in.readByte();
+        int length = vintLength(first);
+        long value = first & (0xFF >> length);
+        boolean allOnes = value == (0xFF >> length);
+        for (int i = 1; i < length; i++) {
+            int next = in.readByte();
+            value = (value << 8) | next;
+            allOnes &= next == 0xFF;
+        }
+        return allOnes ? UNKNOWN_SIZE : value;
+    }
+
+    private static void writeId(OutputStream out, long id) throws IOException {
+        int length = (64 - Long.numberOfLeadingZeros(id) + 7) / 8;
+        for (int i = length - 1; i >= 0; i--) {
+            out.write((int) (id >>> (8 * i)));
+        }
+    }
+
+    // Always 8 bytes wide, which keeps size rewriting trivial
+    private static void writeSize(OutputStream out, long size) throws IOException {
+        out.write(0x01);
+        for (int i = 6; i >= 0; i--) {
+            out.write((int) (size >>> (8 * i)));
+        }
+    }
+
+    record Probe(long audioTrackNumber, byte[] tracks) {
+    }
+
+    // Lets an unknown-size cluster hand back the id of the element that ended it
+    private static final class ElementReader {
+        private final CountingInputStream in;
+        private long pendingId = -1;
+
+        private ElementReader(CountingInputStream in) {
+            this.in = in;
+        }
+
+        long nextId() throws IOException {
+            if (pendingId != -1) {
+                long id = pendingId;
+                pendingId = -1;
+                return id;
+            }
+            return readId(in);
+        }
+
+        void pushBack(long id) {
+            pendingId = id;
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.fyp.speechtotextservice.media;
+
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Media that can be read more than once, e.g. an upload held by the servlet container or a
+ * spooled file. Container parsers use a first pass to find the layout and a second to copy.
+ */
+public interface MediaSource {
+
+    InputStream open() throws IOException;
+
+    /**
+     * Size in bytes, or -1 if unknown.
+     */
+    long size();
+
+    static MediaSource of(MultipartFile multipartFile) {
+        return new MediaSource() {
+            @Override
+            public InputStream open() throws IOException {
+                return multipartFile.getInputStream();
+            }
+
+            @Override
+            public long size() {
+                return multipartFile.getSize();
+            }
+        };
+    }
+
+    static MediaSource of(Path path) {
+        return new MediaSource() {
+            @Override
+            public InputStream open() throws IOException {
+                return Files.newInputStream(path);
+            }
+
+            @Override
+            public long size() {
+                try {
+                    return Files.size(path);
+                } catch (IOException e) {
+                    return -1;
+                }
+            }
+        };
+    }
+}
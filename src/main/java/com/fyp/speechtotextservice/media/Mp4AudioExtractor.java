@@ -0,0 +1,386 @@
+package com.fyp.speechtotextservice.media;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Rewrites an MP4/MOV file so it holds only its first sound track. The first pass reads the
+ * top-level boxes (skipping mdat) to load moov; the output is ftyp, a moov without the other
+ * tracks and with rebased chunk offsets, then an mdat holding only the audio chunks, which are
+ * copied from a second sequential pass over the source.
+ */
+class Mp4AudioExtractor {
+
+    private static final Set<String> CONTAINERS = Set.of("moov", "trak", "mdia", "minf", "stbl");
+    private static final int COPY_BUFFER_SIZE = 64 * 1024;
+    // ftyp only lists brands; anything bigger is not a file we want to rewrite
+    private static final int MAX_FTYP_SIZE = 4096;
+
+    private final int maxMoovSize;
+
+    Mp4AudioExtractor(int maxMoovSize) {
+        this.maxMoovSize = maxMoovSize;
+    }
+
+    static boolean matches(byte[] head) {
+        if (head.length < 8) {
+            return false;
+        }
+        String type = new String(head, 4, 4, StandardCharsets.ISO_8859_1);
+        return type.equals("ftyp") || type.equals("moov") || type.equals("wide")
+                || type.equals("mdat") || type.equals("free");
+    }
+
+    /**
+     * Works out the audio-only layout, or returns null when the file should be uploaded as is
+     * (no sound track, nothing else to drop, fragmented MP4 or an unusual sample table).
+     */
+    Plan plan(MediaSource source) throws IOException {
+        byte[] ftyp = null;
+        byte[] moovPayload = null;
+        try (CountingInputStream in = new CountingInputStream(new BufferedInputStream(source.open(), COPY_BUFFER_SIZE))) {
+            while (moovPayload == null) {
+                BoxHeader header = BoxHeader.read(in);
+                // Also stops at a box that runs to the end of the file or claims to be smaller than its header
+                if (header == null || header.size < header.headerLength) {
+                    break;
+                }
+                long payloadSize = header.size - header.headerLength;
+                switch (header.type) {
+                    case "ftyp" -> {
+                        if (payloadSize > MAX_FTYP_SIZE) {
+                            return null;
+                        }
+                        ftyp = new Box("ftyp", in.readBytes(payloadSize)).toBytes();
+                    }
+                    case "moov" -> {
+                        if (payloadSize > maxMoovSize) {
+                            return null;
+                        }
+                        moovPayload = in.readBytes(payloadSize);
+                    }
+                    case "moof" -> {
+                        return null;
+                    }
+                    default -> in.skipFully(payloadSize);
+                }
+            }
+        }
+        if (moovPayload == null) {
+            return null;
+        }
+
+        Box moov = Box.parse("moov", moovPayload);
+        if (moov == null || moov.child("mvex") != null) {
+            return null;
+        }
+        List<Box> traks = moov.children("trak");
+        Box audioTrak = traks.stream()
+                .filter(trak -> "soun".equals(handlerType(trak)))
+                .findFirst()
+                .orElse(null);
+        if (audioTrak == null || traks.size() == 1) {
+            return null;
+        }
+        moov.children.removeIf(box -> box.type.equals("trak") && box != audioTrak);
+
+        Box stbl = path(audioTrak, "mdia", "minf", "stbl");
+        if (stbl == null || stbl.child("stsc") == null || stbl.child("stsz") == null) {
+            return null;
+        }
+        Box chunkOffsetBox = stbl.child("stco") != null ? stbl.child("stco") : stbl.child("co64");
+        if (chunkOffsetBox == null) {
+            return null;
+        }
+        boolean largeOffsets = chunkOffsetBox.type.equals("co64");
+
+        long[] offsets = readChunkOffsets(chunkOffsetBox.payload, largeOffsets);
+        if (offsets == null) {
+            return null;
+        }
+        long[] sizes = chunkSizes(stbl.child("stsc").payload, stbl.child("stsz").payload, offsets.length);
+        if (sizes == null) {
+            return null;
+        }
+
+        // Audio chunks in file order, so the copy pass never seeks backwards
+        Integer[] order = new Integer[offsets.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.comparingLong(i -> offsets[i]));
+        long audioBytes = 0;
+        long previousEnd = 0;
+        for (int index : order) {
+            if (offsets[index] < previousEnd) {
+                return null;
+            }
+            previousEnd = offsets[index] + sizes[index];
+            audioBytes += sizes[index];
+        }
+
+        int ftypLength = ftyp == null ? 0 : ftyp.length;
+        long moovLength = moov.size();
+        boolean largeMdat = audioBytes + 8 > 0xFFFFFFFFL;
+        int mdatHeaderLength = largeMdat ? 16 : 8;
+        long base = ftypLength + moovLength + mdatHeaderLength;
+
+        long[] newOffsets = new long[offsets.length];
+        long cursor = base;
+        for (int index : order) {
+            newOffsets[index] = cursor;
+            cursor += sizes[index];
+        }
+        if (!largeOffsets && cursor > 0xFFFFFFFFL) {
+            return null;
+        }
+        writeChunkOffsets(chunkOffsetBox.payload, newOffsets, largeOffsets);
+
+        ByteArrayOutputStream header = new ByteArrayOutputStream((int) base);
+        DataOutputStream out = new DataOutputStream(header);
+        if (ftyp != null) {
+            out.write(ftyp);
+        }
+        moov.write(out);
+        if (largeMdat) {
+            out.writeInt(1);
+            out.writeBytes("mdat");
+            out.writeLong(audioBytes + 16);
+        } else {
+            out.writeInt((int) (audioBytes + 8));
+            out.writeBytes("mdat");
+        }
+        out.flush();
+
+        long[] sortedOffsets = new long[order.length];
+        long[] sortedSizes = new long[order.length];
+        for (int i = 0; i < order.length; i++) {
+            sortedOffsets[i] = offsets[order[i]];
+            sortedSizes[i] = sizes[order[i]];
+        }
+        return new Plan(header.toByteArray(), sortedOffsets, sortedSizes, base + audioBytes);
+    }
+
+    void write(Plan plan, MediaSource source, OutputStream out) throws IOException {
+        out.write(plan.header);
+        byte[] buffer = new byte[COPY_BUFFER_SIZE];
+        try (CountingInputStream in = new CountingInputStream(source.open())) {
+            for (int i = 0; i < plan.chunkOffsets.length; i++) {
+                in.skipFully(plan.chunkOffsets[i] - in.position());
+                in.copyTo(out, plan.chunkSizes[i], buffer);
+            }
+        }
+    }
+
+    private static String handlerType(Box trak) {
+        Box hdlr = path(trak, "mdia", "hdlr");
+        if (hdlr == null || hdlr.payload.length < 12) {
+            return null;
+        }
+        return new String(hdlr.payload, 8, 4, StandardCharsets.ISO_8859_1);
+    }
+
+    private static Box path(Box box, String... types) {
+        Box current = box;
+        for (String type : types) {
+            if (current == null) {
+                return null;
+            }
+            current = current.child(type);
+        }
+        return current;
+    }
+
+    // Null when the entry count does not fit the box
+    private static long[] readChunkOffsets(byte[] payload, boolean large) {
+        if (payload.length < 8) {
+            return null;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(payload);
+        int count = buffer.getInt(4);
+        if (count < 0 || count > (payload.length - 8) / (large ? 8 : 4)) {
+            return null;
+        }
+        long[] offsets = new long[count];
+        for (int i = 0; i < count; i++) {
+            offsets[i] = large ? buffer.getLong(8 + i * 8) : Integer.toUnsignedLong(buffer.getInt(8 + i * 4));
+        }
+        return offsets;
+    }
+
+    private static void writeChunkOffsets(byte[] payload, long[] offsets, boolean large) {
+        ByteBuffer buffer = ByteBuffer.wrap(payload);
+        for (int i = 0; i < offsets.length; i++) {
+            if (large) {
+                buffer.putLong(8 + i * 8, offsets[i]);
+            } else {
+                buffer.putInt(8 + i * 4, (int) offsets[i]);
+            }
+        }
+    }
+
+    // Byte size of every chunk, from the sample-to-chunk and sample-size tables; null if they do not add up
+    private static long[] chunkSizes(byte[] stsc, byte[] stsz, int chunkCount) {
+        if (stsc.length < 8 || stsz.length < 12) {
+            return null;
+        }
+        ByteBuffer stscBuffer = ByteBuffer.wrap(stsc);
+        ByteBuffer stszBuffer = ByteBuffer.wrap(stsz);
+        int stscEntries = stscBuffer.getInt(4);
+        int uniformSize = stszBuffer.getInt(4);
+        int sampleCount = stszBuffer.getInt(8);
+        if (stscEntries <= 0 || stscEntries > (stsc.length - 8) / 12 || sampleCount < 0
+                || (uniformSize == 0 && sampleCount > (stsz.length - 12) / 4)) {
+            return null;
+        }
+
+        long[] sizes = new long[chunkCount];
+        int sample = 0;
+        for (int entry = 0; entry < stscEntries; entry++) {
+            int firstChunk = stscBuffer.getInt(8 + entry * 12);
+            int samplesPerChunk = stscBuffer.getInt(12 + entry * 12);
+            int lastChunk = entry + 1 < stscEntries ? stscBuffer.getInt(8 + (entry + 1) * 12) - 1 : chunkCount;
+            if (firstChunk < 1 || samplesPerChunk < 0) {
+                return null;
+            }
+            for (int chunk = firstChunk; chunk <= lastChunk && chunk <= chunkCount; chunk++) {
+                long chunkSize = 0;
+                for (int s = 0; s < samplesPerChunk; s++, sample++) {
+                    if (sample >= sampleCount) {
+                        return null;
+                    }
+                    chunkSize += uniformSize != 0 ? uniformSize : Integer.toUnsignedLong(stszBuffer.getInt(12 + sample * 4));
+                }
+                sizes[chunk - 1] = chunkSize;
+            }
+        }
+        return sizes;
+    }
+
+    record Plan(byte[] header, long[] chunkOffsets, long[] chunkSizes, long outputLength) {
+    }
+
+    private record BoxHeader(String type, long size, int headerLength) {
+
+        // Returns null at end of stream; size is -1 for a box that runs to the end of the file
+        static BoxHeader read(CountingInputStream in) throws IOException {
+            int first = in.read();
+            if (first == -1) {
+                return null;
+            }
+            byte[] rest = in.readBytes(7);
+            long size = Integer.toUnsignedLong((first << 24) | ((rest[0] & 0xFF) << 16) | ((rest[1] & 0xFF) << 8) | (rest[2] & 0xFF));
+            String type = new String(rest, 3, 4, StandardCharsets.ISO_8859_1);
+            if (size == 1) {
+                return new BoxHeader(type, ByteBuffer.wrap(in.readBytes(8)).getLong(), 16);
+            }
+            return new BoxHeader(type, size == 0 ? -1 : size, 8);
+        }
+    }
+
+    private static final class Box {
+        private final String type;
+        private final byte[] payload;
+        private final List<Box> children;
+
+        private Box(String type, byte[] payload) {
+            this.type = type;
+            this.payload = payload;
+            this.children = null;
+        }
+
+        private Box(String type, List<Box> children) {
+            this.type = type;
+            this.payload = null;
+            this.children = children;
+        }
+
+        // Null if any box inside is malformed, so the file is left alone rather than cut short
+        static Box parse(String type, byte[] payload) {
+            if (!CONTAINERS.contains(type)) {
+                return new Box(type, payload);
+            }
+            List<Box> children = new ArrayList<>();
+            ByteBuffer buffer = ByteBuffer.wrap(payload);
+            while (buffer.remaining() >= 8) {
+                int start = buffer.position();
+                long size = Integer.toUnsignedLong(buffer.getInt());
+                byte[] typeBytes = new byte[4];
+                buffer.get(typeBytes);
+                int headerLength = 8;
+                if (size == 1) {
+                    if (buffer.remaining() < 8) {
+                        return null;
+                    }
+                    size = buffer.getLong();
+                    headerLength = 16;
+                } else if (size == 0) {
+                    size = payload.length - start;
+                }
+                if (size < headerLength || start + size > payload.length) {
+                    return null;
+                }
+                byte[] childPayload = Arrays.copyOfRange(payload, start + headerLength, (int) (start + size));
+                Box child = parse(new String(typeBytes, StandardCharsets.ISO_8859_1), childPayload);
+                if (child == null) {
+                    return null;
+                }
+                children.add(child);
+                buffer.position((int) (start + size));
+            }
+            return new Box(type, children);
+        }
+
+        Box child(String childType) {
+            if (children == null) {
+                return null;
+            }
+            return children.stream().filter(box -> box.type.equals(childType)).findFirst().orElse(null);
+        }
+
+        List<Box> children(String childType) {
+            return children == null ? List.of() : children.stream().filter(box -> box.type.equals(childType)).toList();
+        }
+
+        long size() {
+            long size = 8;
+            if (children == null) {
+                size += payload.length;
+            } else {
+                for (Box child : children) {
+                    size += child.size();
+                }
+            }
+            return size;
+        }
+
+        void write(DataOutputStream out) throws IOException {
+            out.writeInt((int) size());
+            out.writeBytes(type);
+            if (children == null) {
+                out.write(payload);
+            } else {
+                for (Box child : children) {
+                    child.write(out);
+                }
+            }
+        }
+
+        byte[] toBytes() throws IOException {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            write(new DataOutputStream(bytes));
+            return bytes.toByteArray();
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.fyp.speechtotextservice.media;
+
+import java.io.IOException;
+import java.io.PipedInputStream;
+
+/**
+ * Pipe whose reader sees the writer's failure instead of a silently truncated stream.
+ */
+class PipedAudioInputStream extends PipedInputStream {
+
+    private volatile IOException failure;
+
+    PipedAudioInputStream(int pipeSize) {
+        super(pipeSize);
+    }
+
+    void fail(IOException e) {
+        this.failure = e;
+    }
+
+    @Override
+    public synchronized int read() throws IOException {
+        int value = super.read();
+        if (value == -1) {
+            throwIfFailed();
+        }
+        return value;
+    }
+
+    @Override
+    public synchronized int read(byte[] b, int off, int len) throws IOException {
+        int read = super.read(b, off, len);
+        if (read == -1) {
+            throwIfFailed();
+        }
+        return read;
+    }
+
+    private void throwIfFailed() throws IOException {
+        if (failure != null) {
+            throw new IOException("Audio extraction failed: " + failure.getMessage(), failure);
+        }
+    }
+}
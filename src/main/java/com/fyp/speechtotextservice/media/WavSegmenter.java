@@ -0,0 +1,259 @@
+package com.fyp.speechtotextservice.media;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Splits long PCM16 WAV media at quiet points into overlapping segments, each of which can be
+ * opened as a standalone WAV stream. Silence is found from the mean amplitude of 100 ms frames,
+ * computed in one streaming pass over the data chunk. Frame edges are placed by sample count, so
+ * segment times stay exact at sample rates that do not divide into 100 ms.
+ */
+public class WavSegmenter {
+
+    private static final int FRAME_MILLIS = 100;
+    private static final int QUIET_WINDOW_FRAMES = 3;
+    private static final int HEADER_SCAN_LIMIT = 1024 * 1024;
+    // 16 bytes for PCM, 40 for WAVE_FORMAT_EXTENSIBLE; anything far larger is not a real fmt chunk
+    private static final int MAX_FMT_SIZE = 1024;
+
+    private final Duration segmentLength;
+    private final Duration overlap;
+    private final Duration searchWindow;
+
+    public WavSegmenter(Duration segmentLength, Duration overlap, Duration searchWindow) {
+        this.segmentLength = segmentLength;
+        this.overlap = overlap;
+        this.searchWindow = searchWindow;
+    }
+
+    /**
+     * A piece of the media. Words whose start falls in [boundaryStartMs, boundaryEndMs) belong
+     * to this segment; the rest of its range is overlap shared with its neighbours.
+     */
+    public record Segment(int index, long startByte, long endByte, long startMs, long boundaryStartMs, long boundaryEndMs) {
+    }
+
+    public record Format(int channels, int sampleRate, int blockAlign, long dataOffset, long dataSize) {
+
+        public long durationMs() {
+            return dataSize / blockAlign * 1000 / sampleRate;
+        }
+    }
+
+    /**
+     * Reads the WAV header, or returns null if the media is not 16-bit PCM WAV or its fmt chunk
+     * does not add up.
+     */
+    public static Format readFormat(MediaSource source) throws IOException {
+        try (CountingInputStream in = new CountingInputStream(new BufferedInputStream(source.open()))) {
+            byte[] riff = in.readNBytes(12);
+            if (riff.length < 12 || !new String(riff, 0, 4, StandardCharsets.ISO_8859_1).equals("RIFF")
+                    || !new String(riff, 8, 4, StandardCharsets.ISO_8859_1).equals("WAVE")) {
+                return null;
+            }
+            int channels = 0;
+            int sampleRate = 0;
+            int blockAlign = 0;
+            while (in.position() < HEADER_SCAN_LIMIT) {
+                byte[] header = in.readNBytes(8);
+                if (header.length < 8) {
+                    return null;
+                }
+                String id = new String(header, 0, 4, StandardCharsets.ISO_8859_1);
+                long size = Integer.toUnsignedLong(ByteBuffer.wrap(header, 4, 4).order(ByteOrder.LITTLE_ENDIAN).getInt());
+                if (id.equals("fmt ")) {
+                    if (size < 16 || size > MAX_FMT_SIZE) {
+                        return null;
+                    }
+                    ByteBuffer fmt = ByteBuffer.wrap(in.readBytes(size)).order(ByteOrder.LITTLE_ENDIAN);
+                    int audioFormat = fmt.getShort(0) & 0xFFFF;
+                    channels = fmt.getShort(2);
+                    sampleRate = fmt.getInt(4);
+                    blockAlign = fmt.getShort(12);
+                    int bitsPerSample = fmt.getShort(14);
+                    if ((audioFormat != 1 && audioFormat != 0xFFFE) || bitsPerSample != 16 || channels < 1
+                            || sampleRate <= 0 || blockAlign != channels * 2) {
+                        return null;
+                    }
+                    in.skipFully(size & 1);
+                } else if (id.equals("data")) {
+                    if (sampleRate == 0) {
+                        return null;
+                    }
+                    // Streamed WAVs may leave the data size unset
+                    long available = source.size() > 0 ? source.size() - in.position() : size;
+                    long dataSize = size == 0 || size == 0xFFFFFFFFL ? available : Math.min(size, available);
+                    return new Format(channels, sampleRate, blockAlign, in.position(), dataSize - dataSize % blockAlign);
+                } else {
+                    in.skipFully(size + (size & 1));
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Plans segments; media shorter than one and a half segment lengths yields a single segment.
+     */
+    public List<Segment> plan(MediaSource source, Format format) throws IOException {
+        float[] energy = frameEnergies(source, format);
+        int frameCount = energy.length;
+        int targetFrames = (int) (segmentLength.toMillis() / FRAME_MILLIS);
+        int searchFrames = (int) (searchWindow.toMillis() / FRAME_MILLIS);
+        int overlapFrames = (int) (overlap.toMillis() / FRAME_MILLIS);
+
+        List<Integer> boundaries = new ArrayList<>();
+        boundaries.add(0);
+        int position = 0;
+        while (frameCount - position > targetFrames * 3 / 2) {
+            int center = position + targetFrames;
+            int split = quietestFrame(energy, Math.max(position + 1, center - searchFrames),
+                    Math.min(frameCount - QUIET_WINDOW_FRAMES, center + searchFrames));
+            boundaries.add(split);
+            position = split;
+        }
+        boundaries.add(frameCount);
+
+        List<Segment> segments = new ArrayList<>();
+        for (int i = 0; i + 1 < boundaries.size(); i++) {
+            int startFrame = Math.max(0, boundaries.get(i) - overlapFrames);
+            int endFrame = Math.min(frameCount, boundaries.get(i + 1) + overlapFrames);
+            long startSample = frameStartSample(format, startFrame);
+            long endByte = Math.min(format.dataSize(), frameStartSample(format, endFrame) * format.blockAlign());
+            segments.add(new Segment(i, startSample * format.blockAlign(), endByte, sampleMillis(format, startSample),
+                    sampleMillis(format, frameStartSample(format, boundaries.get(i))),
+                    i + 2 == boundaries.size() ? Long.MAX_VALUE
+                            : sampleMillis(format, frameStartSample(format, boundaries.get(i + 1)))));
+        }
+        return segments;
+    }
+
+    /**
+     * Opens the segment as a complete WAV stream: a fresh header followed by its slice of the data.
+     */
+    public static InputStream openSegment(MediaSource source, Format format, Segment segment) throws IOException {
+        long length = segment.endByte() - segment.startByte();
+        CountingInputStream in = new CountingInputStream(source.open());
+        try {
+            in.skipFully(format.dataOffset() + segment.startByte());
+        } catch (IOException e) {
+            in.close();
+            throw e;
+        }
+        return new SequenceInputStream(new ByteArrayInputStream(wavHeader(format, length)), new LimitedInputStream(in, length));
+    }
+
+    public static long segmentLength(Segment segment) {
+        return 44 + segment.endByte() - segment.startByte();
+    }
+
+    private static float[] frameEnergies(MediaSource source, Format format) throws IOException {
+        long totalSamples = format.dataSize() / format.blockAlign();
+        int frameCount = (int) Math.ceilDiv(totalSamples * 1000, (long) format.sampleRate() * FRAME_MILLIS);
+        float[] energy = new float[frameCount];
+        byte[] frame = new byte[(int) ((frameStartSample(format, 1) + 1) * format.blockAlign())];
+        try (CountingInputStream in = new CountingInputStream(new BufferedInputStream(source.open(), 64 * 1024))) {
+            in.skipFully(format.dataOffset());
+            for (int f = 0; f < frameCount; f++) {
+                long frameSamples = Math.min(totalSamples, frameStartSample(format, f + 1)) - frameStartSample(format, f);
+                int read = in.readNBytes(frame, 0, (int) (frameSamples * format.blockAlign()));
+                long sum = 0;
+                int samples = 0;
+                // First channel only is enough to find pauses
+                for (int i = 0; i + 1 < read; i += format.blockAlign()) {
+                    sum += Math.abs((short) ((frame[i] & 0xFF) | (frame[i + 1] << 8)));
+                    samples++;
+                }
+                energy[f] = samples == 0 ? 0 : (float) sum / samples;
+            }
+        }
+        return energy;
+    }
+
+    private static int quietestFrame(float[] energy, int from, int to) {
+        int best = from;
+        float bestSum = Float.MAX_VALUE;
+        for (int f = from; f <= to; f++) {
+            float sum = 0;
+            for (int w = 0; w < QUIET_WINDOW_FRAMES && f + w < energy.length; w++) {
+                sum += energy[f + w];
+            }
+            if (sum < bestSum) {
+                bestSum = sum;
+                best = f;
+            }
+        }
+        // Split in the middle of the quiet window
+        return Math.min(energy.length - 1, best + QUIET_WINDOW_FRAMES / 2);
+    }
+
+    // First sample of a frame; computed per frame so rounding never accumulates
+    private static long frameStartSample(Format format, long frame) {
+        return frame * format.sampleRate() * FRAME_MILLIS / 1000;
+    }
+
+    private static long sampleMillis(Format format, long sample) {
+        return sample * 1000 / format.sampleRate();
+    }
+
+    private static byte[] wavHeader(Format format, long dataLength) {
+        ByteBuffer header = ByteBuffer.allocate(44).order(ByteOrder.LITTLE_ENDIAN);
+        header.put("RIFF".getBytes(StandardCharsets.ISO_8859_1));
+        header.putInt((int) (36 + dataLength));
+        header.put("WAVEfmt ".getBytes(StandardCharsets.ISO_8859_1));
+        header.putInt(16);
+        header.putShort((short) 1);
+        header.putShort((short) format.channels());
+        header.putInt(format.sampleRate());
+        header.putInt(format.sampleRate() * format.blockAlign());
+        header.putShort((short) format.blockAlign());
+        header.putShort((short) 16);
+        header.put("data".getBytes(StandardCharsets.ISO_8859_1));
+        header.putInt((int) dataLength);
+        return header.array();
+    }
+
+    private static final class LimitedInputStream extends FilterInputStream {
+        private long remaining;
+
+        private LimitedInputStream(InputStream in, long limit) {
+            super(in);
+            this.remaining = limit;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int value = super.read();
+            if (value != -1) {
+                remaining--;
+            }
+            return value;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int read = super.read(b, off, (int) Math.min(len, remaining));
+            if (read > 0) {
+                remaining -= read;
+            }
+            return read;
+        }
+    }
+}
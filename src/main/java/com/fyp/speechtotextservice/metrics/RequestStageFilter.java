@@ -0,0 +1,67 @@
+package com.fyp.speechtotextservice.metrics;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.io.IOException;
+
+/**
+ * Times the HTTP ends of a transcription request: reading the multipart body before the
+ * controller runs, and writing the response body after it returns (marked by
+ * {@link ResponseWriteMarker}).
+ */
+@Component
+public class RequestStageFilter extends OncePerRequestFilter {
+
+    private static final String PATH_PREFIX = "/api/transcribe/";
+    static final String BODY_WRITE_START = RequestStageFilter.class.getName() + ".bodyWriteStart";
+
+    private final StageMetrics stageMetrics;
+
+    public RequestStageFilter(StageMetrics stageMetrics) {
+        this.stageMetrics = stageMetrics;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !request.getRequestURI().startsWith(PATH_PREFIX);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        long receiveNanos = -1;
+        String receiveOutcome = StageMetrics.SUCCESS;
+        if (request.getContentType() != null && request.getContentType().startsWith(MediaType.MULTIPART_FORM_DATA_VALUE)) {
+            // Parts are parsed once and cached, so reading them here only moves the work earlier
+            long start = System.nanoTime();
+            try {
+                request.getParts();
+            } catch (IOException | ServletException | IllegalStateException e) {
+                receiveOutcome = StageMetrics.ERROR;
+            }
+            receiveNanos = System.nanoTime() - start;
+        }
+
+        chain.doFilter(request, response);
+
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        if (!(pattern instanceof String path) || !path.startsWith(PATH_PREFIX)) {
+            return;
+        }
+        String endpoint = path.substring(PATH_PREFIX.length());
+        if (receiveNanos >= 0) {
+            stageMetrics.record(StageMetrics.RECEIVE, endpoint, receiveOutcome, receiveNanos);
+        }
+        if (request.getAttribute(BODY_WRITE_START) instanceof Long bodyWriteStart) {
+            String outcome = response.getStatus() < 400 ? StageMetrics.SUCCESS : StageMetrics.ERROR;
+            stageMetrics.record(StageMetrics.RESPONSE, endpoint, outcome, System.nanoTime() - bodyWriteStart);
+        }
+    }
+}
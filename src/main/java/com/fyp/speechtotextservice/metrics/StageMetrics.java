@@ -0,0 +1,65 @@
+package com.fyp.speechtotextservice.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Timers for each stage a transcription request passes through, published as
+ * {@code transcription.stage} with percentile histograms and tagged by stage, endpoint and
+ * outcome.
+ */
+@Component
+public class StageMetrics {
+
+    public static final String RECEIVE = "receive";
+    public static final String DOWNLOAD = "download";
+    public static final String UPLOAD = "upload";
+    public static final String QUEUE = "queue";
+    public static final String TRANSCRIPTION = "transcription";
+    public static final String RESPONSE = "response";
+
+    public static final String ENDPOINT_VIDEO = "video";
+    public static final String ENDPOINT_LINK = "link";
+
+    public static final String SUCCESS = "success";
+    public static final String ERROR = "error";
+
+    @FunctionalInterface
+    public interface StageWork<T, E extends Exception> {
+        T run() throws E;
+    }
+
+    private final MeterRegistry meterRegistry;
+
+    public StageMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Runs the work and records how long it took, with an error outcome if it threw.
+     */
+    public <T, E extends Exception> T time(String stage, String endpoint, StageWork<T, E> work) throws E {
+        long start = System.nanoTime();
+        String outcome = ERROR;
+        try {
+            T result = work.run();
+            outcome = SUCCESS;
+            return result;
+        } finally {
+            record(stage, endpoint, outcome, System.nanoTime() - start);
+        }
+    }
+
+    public void record(String stage, String endpoint, String outcome, long nanos) {
+        Timer.builder("transcription.stage")
+                .tag("stage", stage)
+                .tag("endpoint", endpoint)
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(meterRegistry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+}
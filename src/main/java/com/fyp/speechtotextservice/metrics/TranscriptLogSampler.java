@@ -0,0 +1,28 @@
+package com.fyp.speechtotextservice.metrics;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lets one in every N transcripts through to the debug log, so debug logging can stay on in
+ * production without printing every transcript on the hot path.
+ */
+@Component
+public class TranscriptLogSampler {
+
+    private final int every;
+    private final AtomicLong events = new AtomicLong();
+
+    /**
+     * @param every log one transcript in this many; 0 logs none
+     */
+    public TranscriptLogSampler(@Value("${logging.sample.transcripts-every:100}") int every) {
+        this.every = every;
+    }
+
+    public boolean sample() {
+        return every > 0 && events.getAndIncrement() % every == 0;
+    }
+}
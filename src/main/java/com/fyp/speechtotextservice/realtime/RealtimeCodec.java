@@ -0,0 +1,146 @@
+package com.fyp.speechtotextservice.realtime;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Wire format of the AssemblyAI realtime protocol. Audio messages are encoded into a buffer
+ * owned by the codec and reused for every frame, so one codec belongs to one stream. Incoming
+ * messages are read with a streaming parser straight into {@link RealtimeEvent}s, without an
+ * intermediate tree.
+ */
+public class RealtimeCodec {
+
+    public static final String TERMINATE_MESSAGE = "{\"terminate_session\":true}";
+
+    private static final JsonFactory JSON = new JsonFactory();
+    private static final byte[] AUDIO_PREFIX = "{\"audio_data\":\"".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] AUDIO_SUFFIX = "\"}".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] BASE64 = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/"
+            .getBytes(StandardCharsets.US_ASCII);
+
+    private byte[] encoded = new byte[0];
+
+    /**
+     * Writes {@code {"audio_data":"<base64>"}} for the first length bytes of the frame into the
+     * codec's buffer.
+     *
+     * @return number of bytes written; the message is {@link #buffer()} up to that length and
+     * stays valid until the next call
+     */
+    public int encodeAudio(byte[] frame, int length) {
+        int needed = AUDIO_PREFIX.length + (length + 2) / 3 * 4 + AUDIO_SUFFIX.length;
+        if (encoded.length < needed) {
+            encoded = new byte[needed];
+            System.arraycopy(AUDIO_PREFIX, 0, encoded, 0, AUDIO_PREFIX.length);
+        }
+        int out = AUDIO_PREFIX.length;
+        int in = 0;
+        int whole = length - length % 3;
+        while (in < whole) {
+            int bits = (frame[in++] & 0xFF) << 16 | (frame[in++] & 0xFF) << 8 | (frame[in++] & 0xFF);
+            encoded[out++] = BASE64[bits >>> 18];
+            encoded[out++] = BASE64[(bits >>> 12) & 0x3F];
+            encoded[out++] = BASE64[(bits >>> 6) & 0x3F];
+            encoded[out++] = BASE64[bits & 0x3F];
+        }
+        int rest = length - whole;
+        if (rest > 0) {
+            int bits = (frame[in] & 0xFF) << 16 | (rest == 2 ? (frame[in + 1] & 0xFF) << 8 : 0);
+            encoded[out++] = BASE64[bits >>> 18];
+            encoded[out++] = BASE64[(bits >>> 12) & 0x3F];
+            encoded[out++] = rest == 2 ? BASE64[(bits >>> 6) & 0x3F] : (byte) '=';
+            encoded[out++] = '=';
+        }
+        System.arraycopy(AUDIO_SUFFIX, 0, encoded, out, AUDIO_SUFFIX.length);
+        return out + AUDIO_SUFFIX.length;
+    }
+
+    public byte[] buffer() {
+        return encoded;
+    }
+
+    /**
+     * Parses one incoming message, or returns null for message types this service ignores.
+     */
+    public static RealtimeEvent decode(String message) throws IOException {
+        String type = null;
+        String text = null;
+        String error = null;
+        String sessionId = null;
+        String expiresAt = null;
+        long audioStart = 0;
+        long audioEnd = 0;
+        double confidence = 0;
+        List<RealtimeEvent.Word> words = List.of();
+
+        try (JsonParser parser = JSON.createParser(message)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("Expected a JSON object");
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                parser.nextToken();
+                switch (field) {
+                    case "message_type" -> type = parser.getText();
+                    case "text" -> text = parser.getText();
+                    case "error" -> error = parser.getText();
+                    case "session_id" -> sessionId = parser.getText();
+                    case "expires_at" -> expiresAt = parser.getText();
+                    case "audio_start" -> audioStart = parser.getLongValue();
+                    case "audio_end" -> audioEnd = parser.getLongValue();
+                    case "confidence" -> confidence = parser.getDoubleValue();
+                    case "words" -> words = readWords(parser);
+                    default -> parser.skipChildren();
+                }
+            }
+        }
+
+        if (error != null) {
+            return new RealtimeEvent.Error(error);
+        }
+        if (type == null) {
+            return null;
+        }
+        return switch (type) {
+            case "SessionBegins" -> new RealtimeEvent.SessionBegins(sessionId, expiresAt);
+            case "PartialTranscript", "FinalTranscript" -> new RealtimeEvent.Transcript(
+                    type.equals("FinalTranscript"), text == null ? "" : text, audioStart, audioEnd, confidence, words);
+            case "SessionTerminated" -> new RealtimeEvent.SessionTerminated();
+            default -> null;
+        };
+    }
+
+    private static List<RealtimeEvent.Word> readWords(JsonParser parser) throws IOException {
+        if (parser.currentToken() != JsonToken.START_ARRAY) {
+            parser.skipChildren();
+            return List.of();
+        }
+        List<RealtimeEvent.Word> words = new ArrayList<>();
+        while (parser.nextToken() == JsonToken.START_OBJECT) {
+            String text = null;
+            long start = 0;
+            long end = 0;
+            double confidence = 0;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                parser.nextToken();
+                switch (field) {
+                    case "text" -> text = parser.getText();
+                    case "start" -> start = parser.getLongValue();
+                    case "end" -> end = parser.getLongValue();
+                    case "confidence" -> confidence = parser.getDoubleValue();
+                    default -> parser.skipChildren();
+                }
+            }
+            words.add(new RealtimeEvent.Word(text, start, end, confidence));
+        }
+        return words;
+    }
+}
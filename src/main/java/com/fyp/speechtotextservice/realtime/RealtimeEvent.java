@@ -0,0 +1,28 @@
+package com.fyp.speechtotextservice.realtime;
+
+import java.util.List;
+
+/**
+ * Messages received from the realtime transcription service, independent of the transport.
+ */
+public sealed interface RealtimeEvent {
+
+    record SessionBegins(String sessionId, String expiresAt) implements RealtimeEvent {
+    }
+
+    /**
+     * A partial or final transcript for the audio between audioStartMs and audioEndMs.
+     */
+    record Transcript(boolean isFinal, String text, long audioStartMs, long audioEndMs,
+                      double confidence, List<Word> words) implements RealtimeEvent {
+    }
+
+    record SessionTerminated() implements RealtimeEvent {
+    }
+
+    record Error(String message) implements RealtimeEvent {
+    }
+
+    record Word(String text, long startMs, long endMs, double confidence) {
+    }
+}
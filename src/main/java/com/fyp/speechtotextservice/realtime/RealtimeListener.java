@@ -0,0 +1,10 @@
+package com.fyp.speechtotextservice.realtime;
+
+@FunctionalInterface
+public interface RealtimeListener {
+
+    /**
+     * Called on the transport's thread; implementations should hand work off rather than block.
+     */
+    void onEvent(RealtimeEvent event);
+}
@@ -0,0 +1,26 @@
+package com.fyp.speechtotextservice.realtime;
+
+/**
+ * One upstream realtime transcription stream, owned by a single live session.
+ */
+public interface RealtimeUpstream {
+
+    /**
+     * Opens the stream, blocking until it is connected.
+     */
+    void connect();
+
+    /**
+     * Sends PCM16 audio. The frame may be reused by the caller as soon as this returns.
+     */
+    void sendAudio(byte[] frame, int length);
+
+    /**
+     * Whether the stream is still connected, as far as the transport can tell.
+     */
+    default boolean isOpen() {
+        return true;
+    }
+
+    void close();
+}
@@ -0,0 +1,9 @@
+package com.fyp.speechtotextservice.realtime;
+
+/**
+ * Creates unconnected upstream streams; selected by {@code assemblyai.realtime.transport}.
+ */
+public interface RealtimeUpstreamFactory {
+
+    RealtimeUpstream create(int sampleRate, RealtimeListener listener);
+}
@@ -0,0 +1,193 @@
+package com.fyp.speechtotextservice.realtime;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Keeps upstream realtime streams connected ahead of demand, so a new live session skips the
+ * DNS, TLS, handshake and session-start round trips. A background thread tops the pool up to
+ * the minimum idle size and discards idle streams that failed, closed or aged out; when the
+ * pool is empty a stream is connected on demand as before.
+ */
+@Slf4j
+@Component
+public class RealtimeUpstreamPool {
+
+    private final RealtimeUpstreamFactory factory;
+    private final int sampleRate;
+    private final int minIdle;
+    private final Duration maxIdleAge;
+    private final Duration healthCheckInterval;
+    private final ConcurrentLinkedDeque<PooledUpstream> idle = new ConcurrentLinkedDeque<>();
+    private final AtomicInteger connecting = new AtomicInteger();
+    private final ScheduledExecutorService maintainer = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().name("upstream-pool").daemon().factory());
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter discarded;
+
+    public RealtimeUpstreamPool(RealtimeUpstreamFactory factory, MeterRegistry meterRegistry,
+                                @Value("${live.audio.sample-rate:16000}") int sampleRate,
+                                @Value("${live.upstream-pool.min-idle:2}") int minIdle,
+                                @Value("${live.upstream-pool.max-idle-age:PT1M}") Duration maxIdleAge,
+                                @Value("${live.upstream-pool.health-check-interval:PT5S}") Duration healthCheckInterval) {
+        this.factory = factory;
+        this.sampleRate = sampleRate;
+        this.minIdle = minIdle;
+        this.maxIdleAge = maxIdleAge;
+        this.healthCheckInterval = healthCheckInterval;
+        Gauge.builder("live.upstream.pool.idle", idle, ConcurrentLinkedDeque::size).register(meterRegistry);
+        this.hits = Counter.builder("live.upstream.pool.acquired").tag("result", "hit").register(meterRegistry);
+        this.misses = Counter.builder("live.upstream.pool.acquired").tag("result", "miss").register(meterRegistry);
+        this.discarded = Counter.builder("live.upstream.pool.discarded").register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        if (minIdle > 0) {
+            long intervalMillis = healthCheckInterval.toMillis();
+            maintainer.scheduleWithFixedDelay(this::maintain, 0, intervalMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Returns a connected stream delivering its events to the listener, taking one from the pool
+     * if a healthy one is idle and otherwise connecting a new one on the calling thread.
+     */
+    public RealtimeUpstream acquire(RealtimeListener listener) {
+        PooledUpstream pooled;
+        while ((pooled = idle.pollFirst()) != null) {
+            if (pooled.usable(maxIdleAge)) {
+                pooled.bind(listener);
+                hits.increment();
+                replenish();
+                return pooled;
+            }
+            discard(pooled);
+        }
+        misses.increment();
+        replenish();
+        pooled = new PooledUpstream(factory, sampleRate);
+        pooled.bind(listener);
+        pooled.connect();
+        return pooled;
+    }
+
+    public int getIdleCount() {
+        return idle.size();
+    }
+
+    private void replenish() {
+        if (minIdle > 0 && !maintainer.isShutdown()) {
+            maintainer.execute(this::maintain);
+        }
+    }
+
+    private void maintain() {
+        for (Iterator<PooledUpstream> it = idle.iterator(); it.hasNext(); ) {
+            PooledUpstream pooled = it.next();
+            if (!pooled.usable(maxIdleAge) && idle.removeFirstOccurrence(pooled)) {
+                discard(pooled);
+            }
+        }
+        // Connects run one at a time here; a burst beyond the pool falls back to connecting on demand
+        while (idle.size() + connecting.get() < minIdle && !Thread.currentThread().isInterrupted()) {
+            connecting.incrementAndGet();
+            try {
+                PooledUpstream pooled = new PooledUpstream(factory, sampleRate);
+                pooled.connect();
+                idle.addLast(pooled);
+            } catch (RuntimeException e) {
+                log.warn("Could not pre-connect an upstream stream: {}", e.getMessage());
+                return;
+            } finally {
+                connecting.decrementAndGet();
+            }
+        }
+    }
+
+    private void discard(PooledUpstream pooled) {
+        discarded.increment();
+        try {
+            pooled.close();
+        } catch (RuntimeException e) {
+            log.debug("Error closing discarded upstream stream: {}", e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        maintainer.shutdownNow();
+        PooledUpstream pooled;
+        while ((pooled = idle.pollFirst()) != null) {
+            pooled.close();
+        }
+    }
+
+    /**
+     * A stream whose listener is attached when it is handed to a session. Until then a failure or
+     * termination only marks it unusable.
+     */
+    private static final class PooledUpstream implements RealtimeUpstream {
+        private final RealtimeUpstream delegate;
+        private final long connectedAt = System.nanoTime();
+        private volatile RealtimeListener listener;
+        private volatile boolean failed;
+
+        private PooledUpstream(RealtimeUpstreamFactory factory, int sampleRate) {
+            this.delegate = factory.create(sampleRate, this::onEvent);
+        }
+
+        private void onEvent(RealtimeEvent event) {
+            if (event instanceof RealtimeEvent.Error || event instanceof RealtimeEvent.SessionTerminated) {
+                failed = true;
+            }
+            RealtimeListener current = listener;
+            if (current != null) {
+                current.onEvent(event);
+            }
+        }
+
+        private void bind(RealtimeListener listener) {
+            this.listener = listener;
+        }
+
+        private boolean usable(Duration maxIdleAge) {
+            return !failed && delegate.isOpen() && System.nanoTime() - connectedAt < maxIdleAge.toNanos();
+        }
+
+        @Override
+        public void connect() {
+            delegate.connect();
+        }
+
+        @Override
+        public void sendAudio(byte[] frame, int length) {
+            delegate.sendAudio(frame, length);
+        }
+
+        @Override
+        public boolean isOpen() {
+            return delegate.isOpen();
+        }
+
+        @Override
+        public void close() {
+            delegate.close();
+        }
+    }
+}
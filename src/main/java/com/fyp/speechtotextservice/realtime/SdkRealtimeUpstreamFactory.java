@@ -0,0 +1,104 @@
+package com.fyp.speechtotextservice.realtime;
+
+import com.assemblyai.api.RealtimeTranscriber;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Upstream streams backed by the AssemblyAI SDK's {@link RealtimeTranscriber}.
+ */
+@Component
+@ConditionalOnProperty(name = "assemblyai.realtime.transport", havingValue = "sdk", matchIfMissing = true)
+public class SdkRealtimeUpstreamFactory implements RealtimeUpstreamFactory {
+
+    @Value("${assemblyai.api.key}")
+    private String apiKey;
+
+    @Override
+    public RealtimeUpstream create(int sampleRate, RealtimeListener listener) {
+        return new SdkUpstream(apiKey, sampleRate, listener);
+    }
+
+    private static List<RealtimeEvent.Word> words(List<com.assemblyai.api.resources.realtime.types.Word> words) {
+        if (words == null) {
+            return List.of();
+        }
+        return words.stream()
+                .map(word -> new RealtimeEvent.Word(word.getText(), word.getStart(), word.getEnd(), word.getConfidence()))
+                .toList();
+    }
+
+    /**
+     * Tracks whether the SDK's socket is still up, so a stream AssemblyAI closes is noticed by
+     * its session and never handed out again by the pool.
+     */
+    private static final class SdkUpstream implements RealtimeUpstream {
+        private static final int NORMAL_CLOSURE = 1000;
+
+        private final RealtimeListener listener;
+        private final RealtimeTranscriber transcriber;
+        private volatile boolean open;
+        private volatile boolean closing;
+
+        private SdkUpstream(String apiKey, int sampleRate, RealtimeListener listener) {
+            this.listener = listener;
+            this.transcriber = RealtimeTranscriber.builder()
+                    .apiKey(apiKey)
+                    .sampleRate(sampleRate)
+                    .onSessionStart(session -> listener.onEvent(new RealtimeEvent.SessionBegins(null, null)))
+                    .onPartialTranscript(partial -> listener.onEvent(new RealtimeEvent.Transcript(false, partial.getText(),
+                            partial.getAudioStart(), partial.getAudioEnd(), partial.getConfidence(), words(partial.getWords()))))
+                    .onFinalTranscript(result -> listener.onEvent(new RealtimeEvent.Transcript(true, result.getText(),
+                            result.getAudioStart(), result.getAudioEnd(), result.getConfidence(), words(result.getWords()))))
+                    .onError(error -> listener.onEvent(new RealtimeEvent.Error(error.getMessage())))
+                    .onClose(this::closed)
+                    .build();
+        }
+
+        @Override
+        public void connect() {
+            // Set first, so a close reported while connecting is not overwritten
+            open = true;
+            try {
+                transcriber.connect();
+            } catch (RuntimeException e) {
+                open = false;
+                throw e;
+            }
+        }
+
+        @Override
+        public void sendAudio(byte[] frame, int length) {
+            transcriber.sendAudio(length == frame.length ? frame : Arrays.copyOf(frame, length));
+        }
+
+        @Override
+        public boolean isOpen() {
+            return open;
+        }
+
+        @Override
+        public void close() {
+            closing = true;
+            open = false;
+            transcriber.close();
+        }
+
+        // Our own close needs no event; anything else means the stream is gone
+        private void closed(Integer code, String reason) {
+            open = false;
+            if (closing) {
+                return;
+            }
+            if (code != null && code == NORMAL_CLOSURE) {
+                listener.onEvent(new RealtimeEvent.SessionTerminated());
+            } else {
+                listener.onEvent(new RealtimeEvent.Error("Upstream closed: " + code + " " + reason));
+            }
+        }
+    }
+}
@@ -0,0 +1,275 @@
+package com.fyp.speechtotextservice.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fyp.speechtotextservice.admission.AdmissionController;
+import com.fyp.speechtotextservice.dto.BatchTranscriptionEvent;
+import com.fyp.speechtotextservice.dto.LinkTranscriptionRequest;
+import com.fyp.speechtotextservice.dto.TranscriptionResponse;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Transcribes a batch of links and uploads. Items with the same media are transcribed once,
+ * the work is queued on the {@link FairShareScheduler} under the caller's client id, and
+ * progress streams back as NDJSON while the batch runs.
+ */
+@Slf4j
+@Service
+public class BatchTranscriptionService {
+
+    public static final String EVENT_ACCEPTED = "accepted";
+    public static final String EVENT_STARTED = "started";
+    public static final String EVENT_COMPLETED = "completed";
+    public static final String EVENT_ERROR = "error";
+    public static final String EVENT_DONE = "done";
+
+    /**
+     * One item of a batch.
+     *
+     * @param source  what the caller sent, echoed in progress events
+     * @param key     identifies the media; items with equal keys are transcribed once
+     * @param task    the transcription
+     * @param cleanup run once the item is finished or abandoned, or at once for a duplicate; may be null
+     */
+    public record BatchItem(String source, String key, TranscriptionJobService.JobTask task, Runnable cleanup) {
+    }
+
+    private final SpeechToTextService speechToTextService;
+    private final FairShareScheduler scheduler;
+    private final AdmissionController admissionController;
+    private final ObjectMapper objectMapper;
+    private final int maxItems;
+    private final Duration timeout;
+    private final Counter duplicateItems;
+
+    public BatchTranscriptionService(SpeechToTextService speechToTextService, FairShareScheduler scheduler,
+                                     AdmissionController admissionController, ObjectMapper objectMapper, MeterRegistry meterRegistry,
+                                     @Value("${transcription.batch.max-items:500}") int maxItems,
+                                     @Value("${transcription.batch.timeout:PT1H}") Duration timeout) {
+        this.speechToTextService = speechToTextService;
+        this.scheduler = scheduler;
+        this.admissionController = admissionController;
+        this.objectMapper = objectMapper;
+        this.maxItems = maxItems;
+        this.timeout = timeout;
+        this.duplicateItems = Counter.builder("transcription.batch.duplicates")
+                .description("Batch items answered by another item of the same batch")
+                .register(meterRegistry);
+    }
+
+    public int getMaxItems() {
+        return maxItems;
+    }
+
+    public BatchItem linkItem(String mediaUrl, String languageCode) {
+        String trimmed = mediaUrl == null ? "" : mediaUrl.trim();
+        String key = YouTubeLinks.extractVideoId(trimmed).map(TranscriptCache::youTubeKey).orElse("url-" + trimmed);
+        LinkTranscriptionRequest request = new LinkTranscriptionRequest();
+        request.setMediaUrl(trimmed);
+        request.setLanguageCode(languageCode);
+        return new BatchItem(trimmed, key, () -> speechToTextService.transcribeFromLink(request), null);
+    }
+
+    /**
+     * Spools the upload, since the batch outlives the request that carried it.
+     */
+    public BatchItem fileItem(MultipartFile file) throws IOException {
+        File spooled = speechToTextService.spoolUpload(file);
+        String key;
+        try (InputStream in = Files.newInputStream(spooled.toPath())) {
+            key = TranscriptCache.contentKey(in);
+        } catch (IOException e) {
+            deleteSpooled(spooled);
+            throw e;
+        }
+        return new BatchItem(file.getOriginalFilename(), key,
+                () -> speechToTextService.transcribeFile(spooled), () -> deleteSpooled(spooled));
+    }
+
+    /**
+     * Queues the batch and returns the stream its progress is written to.
+     *
+     * @throws TranscriptionJobService.JobQueueFullException if the items do not fit in the queue;
+     *                                                       nothing is queued and the items are cleaned up
+     */
+    public ResponseBodyEmitter submit(String clientId, List<BatchItem> items) {
+        Map<String, List<Integer>> groups = new LinkedHashMap<>();
+        for (int i = 0; i < items.size(); i++) {
+            List<Integer> group = groups.computeIfAbsent(items.get(i).key(), key -> new ArrayList<>());
+            if (!group.isEmpty()) {
+                // Only the first item of a group is run, so a duplicate's spooled copy can go now
+                cleanup(items.get(i));
+            }
+            group.add(i);
+        }
+        duplicateItems.increment(items.size() - groups.size());
+
+        Batch batch = new Batch(new ResponseBodyEmitter(timeout.toMillis()), objectMapper, admissionController,
+                items, groups.size());
+        List<Runnable> tasks = new ArrayList<>();
+        for (List<Integer> indexes : groups.values()) {
+            tasks.add(() -> batch.run(indexes));
+        }
+        // Held by the emitter until the response starts, and always ahead of item events
+        BatchTranscriptionEvent accepted = new BatchTranscriptionEvent();
+        accepted.setType(EVENT_ACCEPTED);
+        accepted.setTotal(items.size());
+        accepted.setUnique(groups.size());
+        batch.send(accepted);
+        try {
+            scheduler.submit(clientId, tasks);
+        } catch (TranscriptionJobService.JobQueueFullException e) {
+            groups.values().forEach(indexes -> cleanup(items.get(indexes.get(0))));
+            throw e;
+        }
+        log.info("Queued batch of {} items ({} unique) for client {}", items.size(), groups.size(), clientId);
+        return batch.emitter;
+    }
+
+    /**
+     * A stream holding only an error event, for batches refused before anything was queued.
+     */
+    public ResponseBodyEmitter rejected(String message) {
+        BatchTranscriptionEvent event = new BatchTranscriptionEvent();
+        event.setType(EVENT_ERROR);
+        event.setError(message);
+        ResponseBodyEmitter emitter = new ResponseBodyEmitter();
+        try {
+            emitter.send(objectMapper.writeValueAsString(event) + "\n", MediaType.APPLICATION_JSON);
+            emitter.complete();
+        } catch (IOException e) {
+            emitter.completeWithError(e);
+        }
+        return emitter;
+    }
+
+    private static void cleanup(BatchItem item) {
+        if (item.cleanup() != null) {
+            item.cleanup().run();
+        }
+    }
+
+    private static void deleteSpooled(File spooled) {
+        if (spooled.exists() && !spooled.delete()) {
+            log.warn("Failed to delete spooled upload: {}", spooled.getAbsolutePath());
+        }
+    }
+
+    private static final class Batch {
+        private final ResponseBodyEmitter emitter;
+        private final ObjectMapper objectMapper;
+        private final AdmissionController admissionController;
+        private final List<BatchItem> items;
+        private final AtomicInteger remaining;
+        private final AtomicInteger completed = new AtomicInteger();
+        private final AtomicInteger failed = new AtomicInteger();
+        // Set when the client goes away; queued items are then skipped
+        private final AtomicBoolean abandoned = new AtomicBoolean();
+
+        private Batch(ResponseBodyEmitter emitter, ObjectMapper objectMapper, AdmissionController admissionController,
+                      List<BatchItem> items, int uniqueItems) {
+            this.emitter = emitter;
+            this.objectMapper = objectMapper;
+            this.admissionController = admissionController;
+            this.items = items;
+            this.remaining = new AtomicInteger(uniqueItems);
+            emitter.onTimeout(() -> abandoned.set(true));
+            emitter.onError(error -> abandoned.set(true));
+        }
+
+        private void run(List<Integer> indexes) {
+            BatchItem item = items.get(indexes.get(0));
+            try {
+                if (abandoned.get()) {
+                    return;
+                }
+                for (int index : indexes) {
+                    send(itemEvent(EVENT_STARTED, index, indexes.get(0)));
+                }
+                TranscriptionResponse response = null;
+                String error;
+                // Already accepted, so wait for an upstream slot rather than refusing; live sessions keep theirs
+                try (AdmissionController.Permit slot = admissionController.awaitTranscriptionSlot()) {
+                    response = item.task().run();
+                    error = null;
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    error = "Transcription was interrupted";
+                } catch (Exception e) {
+                    log.warn("Batch item {} failed: {}", item.source(), e.getMessage());
+                    error = e.getMessage();
+                }
+                for (int index : indexes) {
+                    BatchTranscriptionEvent event = itemEvent(error == null ? EVENT_COMPLETED : EVENT_ERROR, index, indexes.get(0));
+                    if (error == null) {
+                        event.setText(response.getText());
+                        completed.incrementAndGet();
+                    } else {
+                        event.setError(error);
+                        failed.incrementAndGet();
+                    }
+                    send(event);
+                }
+            } finally {
+                cleanup(item);
+                if (remaining.decrementAndGet() == 0) {
+                    finish();
+                }
+            }
+        }
+
+        private BatchTranscriptionEvent itemEvent(String type, int index, int first) {
+            BatchTranscriptionEvent event = new BatchTranscriptionEvent();
+            event.setType(type);
+            event.setIndex(index);
+            event.setSource(items.get(index).source());
+            if (index != first) {
+                event.setDuplicateOf(first);
+            }
+            return event;
+        }
+
+        private void finish() {
+            BatchTranscriptionEvent done = new BatchTranscriptionEvent();
+            done.setType(EVENT_DONE);
+            done.setTotal(items.size());
+            done.setCompleted(completed.get());
+            done.setFailed(failed.get());
+            send(done);
+            if (!abandoned.get()) {
+                emitter.complete();
+            }
+        }
+
+        private void send(BatchTranscriptionEvent event) {
+            if (abandoned.get()) {
+                return;
+            }
+            try {
+                // One JSON object per line, written in a single send so workers cannot interleave
+                emitter.send(objectMapper.writeValueAsString(event) + "\n", MediaType.APPLICATION_JSON);
+            } catch (IOException | IllegalStateException e) {
+                log.debug("Batch client went away: {}", e.getMessage());
+                abandoned.set(true);
+            }
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.fyp.speechtotextservice.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Bounded worker pool for batch items with a queue per client. Free workers take the next item
+ * from each waiting client in turn, so a client with a large batch gets the same share as one
+ * with a single item instead of everyone queueing behind it.
+ */
+@Component
+public class FairShareScheduler {
+
+    private final ExecutorService executor = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("batch-worker-", 0).factory());
+    private final Map<String, Deque<Runnable>> queues = new HashMap<>();
+    // Clients with queued work, in the order they are served
+    private final Deque<String> turns = new ArrayDeque<>();
+    private final int workers;
+    private final int queueCapacity;
+    private int queued;
+    private int running;
+
+    public FairShareScheduler(MeterRegistry meterRegistry,
+                              @Value("${transcription.batch.workers:4}") int workers,
+                              @Value("${transcription.batch.queue-capacity:1000}") int queueCapacity) {
+        this.workers = workers;
+        this.queueCapacity = queueCapacity;
+        Gauge.builder("transcription.batch.queued", this, FairShareScheduler::getQueued).register(meterRegistry);
+        Gauge.builder("transcription.batch.running", this, FairShareScheduler::getRunning).register(meterRegistry);
+        Gauge.builder("transcription.batch.clients", this, FairShareScheduler::getClients).register(meterRegistry);
+    }
+
+    /**
+     * Queues all tasks for the client, or none of them if they do not fit.
+     *
+     * @throws TranscriptionJobService.JobQueueFullException if the queue cannot take them all
+     */
+    public synchronized void submit(String clientId, List<Runnable> tasks) {
+        if (queued + tasks.size() > queueCapacity) {
+            throw new TranscriptionJobService.JobQueueFullException(queueCapacity);
+        }
+        Deque<Runnable> queue = queues.computeIfAbsent(clientId, id -> {
+            turns.addLast(id);
+            return new ArrayDeque<>();
+        });
+        queue.addAll(tasks);
+        queued += tasks.size();
+        dispatch();
+    }
+
+    private synchronized void dispatch() {
+        while (running < workers && !turns.isEmpty()) {
+            String clientId = turns.pollFirst();
+            Deque<Runnable> queue = queues.get(clientId);
+            Runnable task = queue.pollFirst();
+            if (queue.isEmpty()) {
+                queues.remove(clientId);
+            } else {
+                turns.addLast(clientId);
+            }
+            queued--;
+            running++;
+            executor.execute(() -> {
+                try {
+                    task.run();
+                } finally {
+                    finished();
+                }
+            });
+        }
+    }
+
+    private synchronized void finished() {
+        running--;
+        dispatch();
+    }
+
+    public synchronized int getQueued() {
+        return queued;
+    }
+
+    public synchronized int getRunning() {
+        return running;
+    }
+
+    public synchronized int getClients() {
+        return queues.size();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -1,55 +1,120 @@
 package com.fyp.speechtotextservice.service;
 
-import com.assemblyai.api.RealtimeTranscriber;
-import org.springframework.beans.factory.annotation.Value;
+import com.fyp.speechtotextservice.admission.AdmissionController;
+import com.fyp.speechtotextservice.live.LiveSession;
+import com.fyp.speechtotextservice.live.LiveSessionRegistry;
+import com.fyp.speechtotextservice.metrics.TranscriptLogSampler;
+import com.fyp.speechtotextservice.realtime.RealtimeEvent;
+import com.fyp.speechtotextservice.realtime.RealtimeListener;
+import com.fyp.speechtotextservice.realtime.RealtimeUpstreamPool;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
+import org.springframework.web.socket.WebSocketSession;
 
 import jakarta.annotation.PreDestroy;
-import java.util.function.Consumer;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
+@Slf4j
 @Service
 public class LiveSpeechToTextService {
 
-    @Value("${assemblyai.api.key}")
-    private String apiKey;
-
-    private RealtimeTranscriber realtimeTranscriber;
-
-    public void initWithCallback(Consumer<String> transcriptCallback) {
-        System.out.println("Initializing AssemblyAI with API key: " + apiKey.substring(0, 4) + "...");
-        realtimeTranscriber = RealtimeTranscriber.builder()
-                .apiKey(apiKey)
-                .onSessionStart(session -> System.out.println("Session started: " + session))
-                .onPartialTranscript(partial -> {
-                    String text = partial.getText();
-                    System.out.println("Partial transcript: '" + text + "'");
-                    transcriptCallback.accept("PARTIAL: " + text);
-                })
-                .onFinalTranscript(finalTranscript -> {
-                    String text = finalTranscript.getText();
-                    System.out.println("Final transcript: '" + text + "'");
-                    transcriptCallback.accept("FINAL: " + text);
-                })
-                .onError(error -> System.err.println("AssemblyAI Error: " + error.getMessage()))
-                .build();
-        System.out.println("Connecting to AssemblyAI...");
-        realtimeTranscriber.connect();
+    private final LiveSessionRegistry sessionRegistry;
+    private final RealtimeUpstreamPool upstreamPool;
+    private final TranscriptLogSampler transcriptLogSampler;
+    private final AdmissionController admissionController;
+    private final Map<String, AdmissionController.Permit> permits = new ConcurrentHashMap<>();
+
+    public LiveSpeechToTextService(LiveSessionRegistry sessionRegistry, RealtimeUpstreamPool upstreamPool,
+                                   TranscriptLogSampler transcriptLogSampler, AdmissionController admissionController) {
+        this.sessionRegistry = sessionRegistry;
+        this.upstreamPool = upstreamPool;
+        this.transcriptLogSampler = transcriptLogSampler;
+        this.admissionController = admissionController;
     }
 
-    public void sendAudio(byte[] audioData) {
-        if (realtimeTranscriber != null) {
-            //System.out.println("Sending audio chunk of size: " + audioData.length);
-            realtimeTranscriber.sendAudio(audioData);
+    /**
+     * Registers a live session for the connection and hands it an upstream stream of its own,
+     * pre-connected from the pool when one is idle. The call returns without waiting for the
+     * stream; transcripts are queued on the session and delivered back over the same connection.
+     *
+     * @throws com.fyp.speechtotextservice.admission.AdmissionRejectedException if the client is over its limits
+     */
+    public LiveSession openSession(WebSocketSession webSocketSession) {
+        AdmissionController.Permit permit = admissionController.admit(AdmissionController.Traffic.LIVE,
+                clientId(webSocketSession));
+        LiveSession liveSession;
+        try {
+            liveSession = sessionRegistry.register(webSocketSession);
+        } catch (RuntimeException e) {
+            permit.close();
+            throw e;
+        }
+        String sessionId = liveSession.getId();
+        permits.put(sessionId, permit);
+        try {
+            RealtimeListener listener = event -> {
+                switch (event) {
+                    case RealtimeEvent.SessionBegins begins ->
+                            log.debug("Upstream session {} started for {}", begins.sessionId(), sessionId);
+                    case RealtimeEvent.Transcript transcript -> {
+                        // Per-message logging is too costly at streaming rates, so only finals are sampled
+                        if (transcript.isFinal() && log.isDebugEnabled() && transcriptLogSampler.sample()) {
+                            log.debug("Sampled final transcript ({}): '{}'", sessionId, transcript.text());
+                        }
+                        liveSession.enqueueTranscript(transcript);
+                    }
+                    case RealtimeEvent.Error error -> {
+                        log.warn("AssemblyAI error ({}): {}", sessionId, error.message());
+                        upstreamEnded(liveSession, "Transcription stream failed");
+                    }
+                    case RealtimeEvent.SessionTerminated terminated ->
+                            upstreamEnded(liveSession, "Transcription stream ended");
+                }
+            };
+            liveSession.start(() -> upstreamPool.acquire(listener));
+            return liveSession;
+        } catch (RuntimeException e) {
+            closeSession(sessionId);
+            throw e;
+        }
+    }
+
+    public void sendAudio(String sessionId, ByteBuffer audioData) throws InterruptedException {
+        LiveSession liveSession = sessionRegistry.get(sessionId);
+        if (liveSession != null) {
+            liveSession.sendAudio(audioData);
         } else {
-            System.err.println("RealtimeTranscriber is null");
+            log.warn("No live session for id {}", sessionId);
         }
     }
 
+    public void closeSession(String sessionId) {
+        sessionRegistry.remove(sessionId);
+        AdmissionController.Permit permit = permits.remove(sessionId);
+        if (permit != null) {
+            permit.close();
+        }
+    }
+
+    // Without its upstream the session is useless, so the client is told rather than left streaming into nothing
+    private void upstreamEnded(LiveSession liveSession, String reason) {
+        liveSession.upstreamEnded(reason);
+        closeSession(liveSession.getId());
+    }
+
+    private String clientId(WebSocketSession webSocketSession) {
+        InetSocketAddress remote = webSocketSession.getRemoteAddress();
+        return admissionController.clientId(
+                webSocketSession.getHandshakeHeaders().getFirst(AdmissionController.CLIENT_ID_HEADER),
+                remote == null ? webSocketSession.getId() : remote.getAddress().getHostAddress());
+    }
+
     @PreDestroy
     public void cleanup() {
-        if (realtimeTranscriber != null) {
-            System.out.println("Closing RealtimeTranscriber...");
-            realtimeTranscriber.close();
-        }
+        log.info("Closing {} live sessions", sessionRegistry.getActiveCount());
+        sessionRegistry.closeAll();
     }
 }
@@ -0,0 +1,304 @@
+package com.fyp.speechtotextservice.service;
+
+import com.fyp.speechtotextservice.dto.UploadStatus;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Uploads that survive dropped connections. A client creates an upload of a known size, sends
+ * byte ranges in any order and in parallel, asks how far it got after a failure and completes
+ * the upload once every byte has arrived. Each range is copied from the request straight into
+ * its place in the file through {@link FileChannel}, so neither the file size nor the number of
+ * parallel ranges affects the heap. Each client may hold only a few uploads at once, and an
+ * upload is only created when the disk has room for it on top of what earlier uploads still
+ * have to receive.
+ */
+@Slf4j
+@Service
+public class ResumableUploadService {
+
+    private final Map<String, Upload> uploads = new ConcurrentHashMap<>();
+    private final Path directory;
+    private final long maxSize;
+    private final int maxUploads;
+    private final int maxUploadsPerClient;
+    private final Duration expiry;
+    private final Counter receivedBytes;
+    private final ScheduledExecutorService purger = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().name("upload-purger").daemon().factory());
+
+    public ResumableUploadService(MeterRegistry meterRegistry,
+                                  @Value("${uploads.dir:${java.io.tmpdir}/resumable-uploads}") Path directory,
+                                  @Value("${uploads.max-size:10GB}") DataSize maxSize,
+                                  @Value("${uploads.max-active:100}") int maxUploads,
+                                  @Value("${uploads.max-active-per-client:4}") int maxUploadsPerClient,
+                                  @Value("${uploads.expiry:PT24H}") Duration expiry,
+                                  @Value("${uploads.purge-interval:PT5M}") Duration purgeInterval) throws IOException {
+        this.directory = Files.createDirectories(directory);
+        this.maxSize = maxSize.toBytes();
+        this.maxUploads = maxUploads;
+        this.maxUploadsPerClient = maxUploadsPerClient;
+        this.expiry = expiry;
+        this.receivedBytes = Counter.builder("uploads.received")
+                .baseUnit("bytes")
+                .description("Bytes written to resumable uploads")
+                .register(meterRegistry);
+        Gauge.builder("uploads.active", uploads, Map::size).register(meterRegistry);
+        purger.scheduleWithFixedDelay(this::purgeExpired, purgeInterval.toMillis(), purgeInterval.toMillis(),
+                TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Creates an empty upload of the given size for the client.
+     *
+     * @throws IllegalArgumentException      if the size is not positive or above the limit
+     * @throws IllegalStateException         if too many uploads are already in progress
+     * @throws ClientUploadLimitException    if the client already has its share of uploads in progress
+     * @throws InsufficientStorageException  if the disk cannot hold the upload
+     */
+    public UploadStatus create(String clientId, long size) throws IOException {
+        if (size <= 0 || size > maxSize) {
+            throw new IllegalArgumentException("Upload size must be between 1 and " + maxSize + " bytes");
+        }
+        // Checked and registered together so concurrent creates cannot overshoot the limits
+        synchronized (uploads) {
+            if (uploads.size() >= maxUploads) {
+                throw new IllegalStateException("Too many uploads in progress (" + maxUploads + ")");
+            }
+            long clientUploads = uploads.values().stream().filter(upload -> upload.clientId.equals(clientId)).count();
+            if (clientUploads >= maxUploadsPerClient) {
+                throw new ClientUploadLimitException(maxUploadsPerClient);
+            }
+            // Files are sparse, so what earlier uploads have yet to receive is still owed to them
+            long owed = uploads.values().stream().mapToLong(Upload::missingBytes).sum();
+            if (size + owed > Files.getFileStore(directory).getUsableSpace()) {
+                throw new InsufficientStorageException(size);
+            }
+            String id = UUID.randomUUID().toString();
+            Path file = directory.resolve(id + ".upload");
+            // Sized up front (sparsely where the file system allows) since transferFrom cannot write past the end
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE,
+                    StandardOpenOption.SPARSE)) {
+                channel.write(ByteBuffer.allocate(1), size - 1);
+            }
+            Upload upload = new Upload(id, clientId, file, size);
+            uploads.put(id, upload);
+            log.info("Created upload {} of {} bytes for client {}", id, size, clientId);
+            return upload.status();
+        }
+    }
+
+    public UploadStatus status(String id) {
+        return find(id).status();
+    }
+
+    /**
+     * Writes one byte range from the request body. Whatever arrives before the connection drops
+     * is kept, so the client can resume from the reported offset.
+     *
+     * @param first first byte of the range
+     * @param last  last byte of the range, inclusive
+     * @param total the file size the client states, or null if it does not
+     * @throws IllegalArgumentException if the range does not fit the upload
+     */
+    public UploadStatus write(String id, long first, long last, Long total, InputStream body) throws IOException {
+        Upload upload = find(id);
+        if (total != null && total != upload.size) {
+            throw new IllegalArgumentException("Upload is " + upload.size + " bytes, not " + total);
+        }
+        if (first < 0 || last < first || last >= upload.size) {
+            throw new IllegalArgumentException("Range " + first + "-" + last + " is outside the upload of "
+                    + upload.size + " bytes");
+        }
+        long expected = last - first + 1;
+        long written = 0;
+        ReadableByteChannel source = Channels.newChannel(body);
+        try (FileChannel channel = FileChannel.open(upload.file, StandardOpenOption.WRITE)) {
+            while (written < expected) {
+                long transferred = channel.transferFrom(source, first + written, expected - written);
+                if (transferred <= 0) {
+                    break;
+                }
+                written += transferred;
+                upload.touch();
+            }
+        } finally {
+            if (written > 0) {
+                upload.received(first, first + written);
+                receivedBytes.increment(written);
+            }
+        }
+        if (written < expected) {
+            throw new IOException("Range ended after " + written + " of " + expected + " bytes");
+        }
+        return upload.status();
+    }
+
+    /**
+     * Takes a fully received upload out of the service; the caller owns the file from then on.
+     *
+     * @throws IllegalStateException if bytes are still missing
+     */
+    public File complete(String id) {
+        Upload upload = find(id);
+        synchronized (upload) {
+            if (upload.offset() < upload.size) {
+                throw new IllegalStateException("Upload is missing bytes from offset " + upload.offset());
+            }
+            if (!uploads.remove(id, upload)) {
+                throw new UploadNotFoundException(id);
+            }
+        }
+        log.info("Completed upload {} ({} bytes)", id, upload.size);
+        return upload.file.toFile();
+    }
+
+    public void abort(String id) {
+        Upload upload = uploads.remove(id);
+        if (upload == null) {
+            throw new UploadNotFoundException(id);
+        }
+        delete(upload);
+    }
+
+    private Upload find(String id) {
+        Upload upload = uploads.get(id);
+        if (upload == null) {
+            throw new UploadNotFoundException(id);
+        }
+        return upload;
+    }
+
+    private void purgeExpired() {
+        Instant cutoff = Instant.now().minus(expiry);
+        uploads.values().removeIf(upload -> {
+            if (upload.lastActivity.isAfter(cutoff)) {
+                return false;
+            }
+            log.info("Discarding upload {} after {} without activity", upload.id, expiry);
+            delete(upload);
+            return true;
+        });
+    }
+
+    private static void delete(Upload upload) {
+        try {
+            Files.deleteIfExists(upload.file);
+        } catch (IOException e) {
+            log.warn("Failed to delete upload file {}: {}", upload.file, e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        purger.shutdownNow();
+        uploads.values().forEach(ResumableUploadService::delete);
+        uploads.clear();
+    }
+
+    private static final class Upload {
+        private final String id;
+        private final String clientId;
+        private final Path file;
+        private final long size;
+        // Received ranges as start -> end (exclusive), merged so they never touch or overlap
+        private final TreeMap<Long, Long> ranges = new TreeMap<>();
+        private volatile Instant lastActivity = Instant.now();
+
+        private Upload(String id, String clientId, Path file, long size) {
+            this.id = id;
+            this.clientId = clientId;
+            this.file = file;
+            this.size = size;
+        }
+
+        private void touch() {
+            lastActivity = Instant.now();
+        }
+
+        private synchronized void received(long start, long end) {
+            Map.Entry<Long, Long> before = ranges.floorEntry(start);
+            if (before != null && before.getValue() >= start) {
+                start = before.getKey();
+                end = Math.max(end, before.getValue());
+            }
+            Map.Entry<Long, Long> next;
+            while ((next = ranges.ceilingEntry(start)) != null && next.getKey() <= end) {
+                end = Math.max(end, next.getValue());
+                ranges.remove(next.getKey());
+            }
+            ranges.put(start, end);
+        }
+
+        private synchronized long offset() {
+            Map.Entry<Long, Long> first = ranges.firstEntry();
+            return first != null && first.getKey() == 0 ? first.getValue() : 0;
+        }
+
+        private synchronized long missingBytes() {
+            long received = 0;
+            for (Map.Entry<Long, Long> range : ranges.entrySet()) {
+                received += range.getValue() - range.getKey();
+            }
+            return size - received;
+        }
+
+        private synchronized UploadStatus status() {
+            UploadStatus status = new UploadStatus();
+            status.setId(id);
+            status.setSize(size);
+            status.setOffset(offset());
+            List<String> received = new ArrayList<>(ranges.size());
+            ranges.forEach((start, end) -> received.add(start + "-" + (end - 1)));
+            status.setRanges(received);
+            status.setComplete(offset() == size);
+            return status;
+        }
+    }
+
+    public static class UploadNotFoundException extends RuntimeException {
+        public UploadNotFoundException(String id) {
+            super("No upload with id " + id);
+        }
+    }
+
+    public static class ClientUploadLimitException extends RuntimeException {
+        public ClientUploadLimitException(int limit) {
+            super("This client already has " + limit + " uploads in progress");
+        }
+    }
+
+    public static class InsufficientStorageException extends RuntimeException {
+        public InsufficientStorageException(long size) {
+            super("Not enough disk space for an upload of " + size + " bytes");
+        }
+    }
+}
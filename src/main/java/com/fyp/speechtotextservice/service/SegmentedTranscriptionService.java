@@ -0,0 +1,224 @@
+package com.fyp.speechtotextservice.service;
+
+import com.fyp.speechtotextservice.media.MediaSource;
+import com.fyp.speechtotextservice.media.WavSegmenter;
+import com.fyp.speechtotextservice.metrics.StageMetrics;
+import com.fyp.speechtotextservice.service.backend.TranscriptResult;
+import com.fyp.speechtotextservice.service.backend.TranscriptionBackend;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Transcribes long recordings as overlapping segments in parallel, so latency is bounded by
+ * segment length rather than total duration. Segments are cut at quiet points, transcribed
+ * concurrently up to the configured fan-out, then stitched back together: word timings are
+ * shifted by each segment's start and words in the overlap are kept only from the segment
+ * that owns that stretch of audio.
+ * <p>
+ * Only PCM16 WAV media is segmented, since finding silence needs decoded samples.
+ */
+@Slf4j
+@Service
+public class SegmentedTranscriptionService {
+
+    private final TranscriptionBackend transcriptionBackend;
+    private final StageMetrics stageMetrics;
+    private final WavSegmenter segmenter;
+    private final boolean enabled;
+    private final Duration minDuration;
+    private final int fanOut;
+    private final ExecutorService executor = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("segment-", 0).factory());
+
+    public SegmentedTranscriptionService(TranscriptionBackend transcriptionBackend, StageMetrics stageMetrics,
+                                         @Value("${transcription.segmented.enabled:true}") boolean enabled,
+                                         @Value("${transcription.segmented.min-duration:PT10M}") Duration minDuration,
+                                         @Value("${transcription.segmented.segment-length:PT5M}") Duration segmentLength,
+                                         @Value("${transcription.segmented.overlap:PT2S}") Duration overlap,
+                                         @Value("${transcription.segmented.search-window:PT30S}") Duration searchWindow,
+                                         @Value("${transcription.segmented.fan-out:4}") int fanOut) {
+        this.transcriptionBackend = transcriptionBackend;
+        this.stageMetrics = stageMetrics;
+        this.enabled = enabled;
+        this.minDuration = minDuration;
+        this.fanOut = fanOut;
+        this.segmenter = new WavSegmenter(segmentLength, overlap, searchWindow);
+    }
+
+    /**
+     * Returns the WAV format if the media is long enough to be worth segmenting, otherwise null.
+     */
+    public WavSegmenter.Format segmentable(MediaSource media) throws IOException {
+        if (!enabled) {
+            return null;
+        }
+        WavSegmenter.Format format = WavSegmenter.readFormat(media);
+        if (format == null || format.durationMs() < minDuration.toMillis()) {
+            return null;
+        }
+        return format;
+    }
+
+    public TranscriptResult transcribe(MediaSource media, WavSegmenter.Format format, String endpoint) throws IOException {
+        return transcribe(media, format, endpoint, TranscriptionProgressListener.NONE);
+    }
+
+    /**
+     * Transcribes the media, reporting the stitched text of the leading run of finished segments
+     * to the listener each time that run grows.
+     */
+    public TranscriptResult transcribe(MediaSource media, WavSegmenter.Format format, String endpoint,
+                                       TranscriptionProgressListener listener) throws IOException {
+        List<WavSegmenter.Segment> segments = segmenter.plan(media, format);
+        log.info("Transcribing {} ms of audio as {} segments (fan-out {})", format.durationMs(), segments.size(), fanOut);
+
+        listener.onStage(TranscriptionProgressListener.STAGE_UPLOADING);
+        Semaphore permits = new Semaphore(fanOut);
+        AtomicBoolean processing = new AtomicBoolean();
+        PartialText partialText = new PartialText(segments, listener);
+        // Once any segment fails the rest are pointless; queued ones never start and running ones are interrupted
+        AtomicBoolean failed = new AtomicBoolean();
+        List<Future<TranscriptResult>> results = new ArrayList<>();
+        for (WavSegmenter.Segment segment : segments) {
+            results.add(executor.submit(() -> {
+                TranscriptResult result = transcribeSegment(media, format, segment, permits, failed, endpoint,
+                        () -> {
+                            if (processing.compareAndSet(false, true)) {
+                                listener.onStage(TranscriptionProgressListener.STAGE_PROCESSING);
+                            }
+                        });
+                partialText.finished(segment.index(), result);
+                return result;
+            }));
+        }
+
+        List<TranscriptResult> segmentResults = new ArrayList<>();
+        try {
+            for (Future<TranscriptResult> result : results) {
+                segmentResults.add(result.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            cancel(failed, results);
+            throw new IOException("Interrupted while waiting for segments", e);
+        } catch (ExecutionException e) {
+            cancel(failed, results);
+            Throwable cause = e.getCause();
+            throw cause instanceof IOException ioException ? ioException : new IOException(cause.getMessage(), cause);
+        }
+        return stitch(segments, segmentResults);
+    }
+
+    private static void cancel(AtomicBoolean failed, List<Future<TranscriptResult>> results) {
+        failed.set(true);
+        results.forEach(result -> result.cancel(true));
+    }
+
+    private TranscriptResult transcribeSegment(MediaSource media, WavSegmenter.Format format,
+                                               WavSegmenter.Segment segment, Semaphore permits, AtomicBoolean failed,
+                                               String endpoint, Runnable uploaded) throws IOException {
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Segment " + segment.index() + " was interrupted", e);
+        }
+        try {
+            if (failed.get()) {
+                throw new IOException("Segment " + segment.index() + " skipped after another segment failed");
+            }
+            try (InputStream in = WavSegmenter.openSegment(media, format, segment)) {
+                String reference = stageMetrics.time(StageMetrics.UPLOAD, endpoint,
+                        () -> transcriptionBackend.upload(in, WavSegmenter.segmentLength(segment)));
+                uploaded.run();
+                return stageMetrics.time(StageMetrics.TRANSCRIPTION, endpoint,
+                        () -> TranscriptionBackend.await(transcriptionBackend.transcribeDetailed(reference)));
+            }
+        } catch (IOException e) {
+            failed.set(true);
+            throw new IOException("Segment " + segment.index() + " failed: " + e.getMessage(), e);
+        } finally {
+            permits.release();
+        }
+    }
+
+    static TranscriptResult stitch(List<WavSegmenter.Segment> segments, List<TranscriptResult> results) {
+        List<TranscriptResult.Word> words = new ArrayList<>();
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < segments.size(); i++) {
+            WavSegmenter.Segment segment = segments.get(i);
+            TranscriptResult result = results.get(i);
+            if (result.words().isEmpty()) {
+                // Without timings the overlap cannot be de-duplicated; keep the text as is
+                append(text, result.text());
+                continue;
+            }
+            for (TranscriptResult.Word word : result.words()) {
+                TranscriptResult.Word shifted = word.shift(segment.startMs());
+                if (shifted.startMs() >= segment.boundaryStartMs() && shifted.startMs() < segment.boundaryEndMs()) {
+                    words.add(shifted);
+                    append(text, shifted.text());
+                }
+            }
+        }
+        return new TranscriptResult(text.toString(), words);
+    }
+
+    private static void append(StringBuilder text, String part) {
+        if (part == null || part.isBlank()) {
+            return;
+        }
+        if (!text.isEmpty()) {
+            text.append(' ');
+        }
+        text.append(part.strip());
+    }
+
+    /**
+     * Tracks finished segments and reports the stitched text of the contiguous prefix.
+     */
+    private static final class PartialText {
+        private final List<WavSegmenter.Segment> segments;
+        private final TranscriptResult[] finished;
+        private final TranscriptionProgressListener listener;
+        private int prefix;
+
+        private PartialText(List<WavSegmenter.Segment> segments, TranscriptionProgressListener listener) {
+            this.segments = segments;
+            this.finished = new TranscriptResult[segments.size()];
+            this.listener = listener;
+        }
+
+        private synchronized void finished(int index, TranscriptResult result) {
+            finished[index] = result;
+            int previous = prefix;
+            while (prefix < finished.length && finished[prefix] != null) {
+                prefix++;
+            }
+            // The complete transcript is reported on completion, not as a partial
+            if (prefix > previous && prefix < finished.length) {
+                listener.onPartialText(stitch(segments.subList(0, prefix), Arrays.asList(finished).subList(0, prefix)).text());
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
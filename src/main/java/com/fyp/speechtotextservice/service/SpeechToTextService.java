@@ -1,54 +1,53 @@
 package com.fyp.speechtotextservice.service;
 
-import com.assemblyai.api.AssemblyAI;
-import com.assemblyai.api.resources.transcripts.types.Transcript;
-import com.assemblyai.api.resources.transcripts.types.TranscriptLanguageCode;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fyp.speechtotextservice.config.AssemblyAIConfig;
 import com.fyp.speechtotextservice.dto.*;
+import com.fyp.speechtotextservice.media.AudioExtractor;
+import com.fyp.speechtotextservice.media.ExtractedAudio;
+import com.fyp.speechtotextservice.media.MediaSource;
+import com.fyp.speechtotextservice.media.WavSegmenter;
+import com.fyp.speechtotextservice.metrics.StageMetrics;
+import com.fyp.speechtotextservice.metrics.TranscriptLogSampler;
+import com.fyp.speechtotextservice.service.backend.TranscriptionBackend;
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import okhttp3.*;
-import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
-import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
-import java.io.InputStreamReader;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.util.Optional;
-import java.util.concurrent.TimeUnit;
 
 @Slf4j
 @Service
 @AllArgsConstructor
 public class SpeechToTextService {
 
-    private final OkHttpClient client;
-    private final ObjectMapper objectMapper;
-    @Autowired
-    private final AssemblyAIConfig config;
-
-    @Autowired
-    public SpeechToTextService(AssemblyAIConfig config) {
-        this.config = config;
-        this.client = new OkHttpClient.Builder()
-                .connectTimeout(30, TimeUnit.SECONDS)
-                .readTimeout(30, TimeUnit.SECONDS)
-                .writeTimeout(30, TimeUnit.SECONDS)
-                .build();
-        this.objectMapper = new ObjectMapper();
-    }
+    private final TranscriptCache transcriptCache;
+    private final TranscriptionBackend transcriptionBackend;
+    private final AudioExtractor audioExtractor;
+    private final SegmentedTranscriptionService segmentedTranscriptionService;
+    private final YouTubeAudioDownloader youTubeAudioDownloader;
+    private final StageMetrics stageMetrics;
+    private final TranscriptLogSampler transcriptLogSampler;
 
     // Video transcription
     public TranscriptionResponse transcribeVideo(VideoTranscriptionRequest request) throws IOException {
 
-        // Convert MultipartFile to File
-        File videoFile = convertMultipartFileToFile(request.getVideoFile());
+        // Hash the upload first so repeated media is served from the cache
+        MultipartFile videoFile = request.getVideoFile();
+        String cacheKey;
+        try (InputStream in = videoFile.getInputStream()) {
+            cacheKey = TranscriptCache.contentKey(in);
+        }
 
-        // Convert File to Text
-        String transcribedText = convertFileToText(videoFile);
+        // On a miss, stream only the audio track straight to the transcription backend
+        String transcribedText = transcriptCache.getOrLoad(cacheKey,
+                () -> convertMediaToText(MediaSource.of(videoFile), StageMetrics.ENDPOINT_VIDEO,
+                        TranscriptionProgressListener.NONE));
 
         // Create and return the TranscriptionResponse
         TranscriptionResponse response = new TranscriptionResponse();
@@ -57,15 +56,44 @@ public class SpeechToTextService {
         return response;
     }
 
-    private File convertMultipartFileToFile(MultipartFile multipartFile) throws IOException {
-        File file = new File(System.getProperty("java.io.tmpdir") + "/" + multipartFile.getOriginalFilename());
-        multipartFile.transferTo(file);
-        file.deleteOnExit();
-        return file;
+    // Transcription of an upload that was spooled to disk for a background job
+    public TranscriptionResponse transcribeFile(File file) throws IOException {
+        return transcribeFile(file, TranscriptionProgressListener.NONE);
+    }
+
+    public TranscriptionResponse transcribeFile(File file, TranscriptionProgressListener listener) throws IOException {
+        String cacheKey;
+        try (InputStream in = Files.newInputStream(file.toPath())) {
+            cacheKey = TranscriptCache.contentKey(in);
+        }
+        String transcribedText = transcriptCache.getOrLoad(cacheKey,
+                () -> convertMediaToText(MediaSource.of(file.toPath()), StageMetrics.ENDPOINT_VIDEO, listener));
+
+        TranscriptionResponse response = new TranscriptionResponse();
+        response.setStatus("completed");
+        response.setText(transcribedText);
+        return response;
+    }
+
+    // Copy the upload to a uniquely named temp file that outlives the request
+    public File spoolUpload(MultipartFile multipartFile) throws IOException {
+        Path spooled = Files.createTempFile("upload-", ".tmp");
+        try (InputStream in = multipartFile.getInputStream()) {
+            Files.copy(in, spooled, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            Files.deleteIfExists(spooled);
+            throw e;
+        }
+        return spooled.toFile();
     }
 
     // Link transcription
     public TranscriptionResponse transcribeFromLink(LinkTranscriptionRequest request) throws IOException {
+        return transcribeFromLink(request, TranscriptionProgressListener.NONE);
+    }
+
+    public TranscriptionResponse transcribeFromLink(LinkTranscriptionRequest request,
+                                                    TranscriptionProgressListener listener) throws IOException {
 
         String mediaUrl = request.getMediaUrl();
         log.info("Transcribing from URL: {}", mediaUrl);
@@ -75,127 +103,62 @@ public class SpeechToTextService {
         }
 
         // Check if it's a YouTube URL
-        if (isYouTubeUrl(mediaUrl)) {
-            try {
-                String tempDir = "C:/temp";
-                String outputFilename = tempDir + "/youtube_" + System.currentTimeMillis() + ".mp3";
-                
-                log.info("Downloading YouTube audio to: {}", outputFilename);
-                downloadAudio(mediaUrl, outputFilename);
-
-                File audioFile = new File(outputFilename);
-                if (!audioFile.exists() || audioFile.length() == 0) {
-                    throw new IOException("Audio file does not exist or is empty: " + outputFilename);
-                }
-
-                // Transcribe using AssemblyAI
-//                String transcribedText = AssemblyAiConvertor.convertFileToText(config, audioFile);
-                String transcribedText = convertFileToText(audioFile);
-
-                log.info("Transcription completed for URL: {}", mediaUrl);
-
-                if (audioFile.exists()) {
-                    boolean deleted = audioFile.delete();
-                    if (deleted) {
-                        log.info("Deleted temporary audio file: {}", outputFilename);
-                    } else {
-                        log.warn("Failed to delete temporary audio file: {}", outputFilename);
-                    }
-                }
-                // Create and return the TranscriptionResponse
-                TranscriptionResponse response = new TranscriptionResponse();
-                response.setStatus("completed");
-                response.setText(transcribedText);
-                return response;
-
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-                throw new IOException("YouTube download was interrupted: " + e.getMessage(), e);
-            }
-        } else {
+        if (!YouTubeLinks.isYouTubeUrl(mediaUrl)) {
             throw new IllegalArgumentException("Media URL is not a YouTube URL: " + mediaUrl);
         }
-    }
-
-    private String convertFileToText(File file) throws IOException {
 
-        AssemblyAI assemblyAI = AssemblyAI.builder()
-                .apiKey(config.getApiKey())
-                .build();
+        // Links to the same video share one cached transcript
+        Optional<String> videoId = YouTubeLinks.extractVideoId(mediaUrl);
+        String transcribedText = videoId.isPresent()
+                ? transcriptCache.getOrLoad(TranscriptCache.youTubeKey(videoId.get()), () -> downloadAndTranscribe(mediaUrl, videoId.get(), listener))
+                : downloadAndTranscribe(mediaUrl, null, listener);
 
-        // Configure transcription with automatic language detection
-        var transcriptParams = com.assemblyai.api.resources.transcripts.types.TranscriptOptionalParams.builder()
-                .languageDetection(true)
-                .build();
+        // Create and return the TranscriptionResponse
+        TranscriptionResponse response = new TranscriptionResponse();
+        response.setStatus("completed");
+        response.setText(transcribedText);
+        return response;
+    }
 
-        // Upload and transcribe the audio file
-        log.info("Uploading and transcribing audio from file: {}", file.getAbsolutePath());
-        Transcript transcript = assemblyAI.transcripts().transcribe(file, transcriptParams);
+    // yt-dlp output is uploaded while it downloads; the audio itself is cached by video id
+    private String downloadAndTranscribe(String mediaUrl, String videoId, TranscriptionProgressListener listener)
+            throws IOException {
+        listener.onStage(TranscriptionProgressListener.STAGE_DOWNLOADING);
+        String transcribedText = youTubeAudioDownloader.withAudio(mediaUrl, videoId,
+                (audio, length) -> convertStreamToText(audio, length, StageMetrics.ENDPOINT_LINK, listener));
+        log.info("Transcription completed for URL: {}", mediaUrl);
+        return transcribedText;
+    }
 
-        // Check transcription result
-        if (transcript.getStatus() == null || !transcript.getStatus().toString().equals("completed")) {
-            throw new IOException("Transcription failed: " + transcript.getError());
+    private String convertMediaToText(MediaSource media, String endpoint, TranscriptionProgressListener listener)
+            throws IOException {
+        // Long WAV recordings are split and transcribed in parallel
+        WavSegmenter.Format wavFormat = segmentedTranscriptionService.segmentable(media);
+        if (wavFormat != null) {
+            return segmentedTranscriptionService.transcribe(media, wavFormat, endpoint, listener).text();
         }
 
-        Optional<String> transcribedText = transcript.getText();
-        Optional<TranscriptLanguageCode> detectedLanguage = transcript.getLanguageCode();
-
-        if (transcribedText.isPresent()) {
-            log.info("Transcription completed: {}", transcribedText.get());
-            log.info("Detected language: {}", detectedLanguage);
-            return transcribedText.get();
-        } else {
-            log.warn("Transcription completed but no text was returned.");
-            return null;
+        ExtractedAudio audio = audioExtractor.extract(media);
+        try (InputStream in = audio.stream()) {
+            return convertStreamToText(in, audio.length(), endpoint, listener);
         }
     }
 
-    private void downloadAudio(String youtubeUrl, String outputPath) throws IOException, InterruptedException {
-        log.info("Downloading audio from YouTube URL: {} to {}", youtubeUrl, outputPath);
-
-        File outputFile = new File(outputPath);
-        File outputDir = outputFile.getParentFile();
-        if (outputDir != null && !outputDir.exists()) {
-            outputDir.mkdirs();
-        }
-
-        // Build the yt-dlp command to download the best audio in its native format
-        ProcessBuilder pb = new ProcessBuilder(
-                config.getYtDlpPath(),
-                "-f", "bestaudio", // Download the best audio stream in its native format
-                youtubeUrl,
-                "-o", outputPath
-        );
-        pb.redirectErrorStream(true); // Combine stdout and stderr
-
-        Process process = pb.start();
-
-        // Capture output for debugging and error reporting
-        StringBuilder processOutput = new StringBuilder();
-        try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                log.debug("yt-dlp: {}", line);
-                processOutput.append(line).append("\n");
+    private String convertStreamToText(InputStream audio, long contentLength, String endpoint,
+                                       TranscriptionProgressListener listener) throws IOException {
+        log.debug("Uploading {} bytes of audio", contentLength);
+        listener.onStage(TranscriptionProgressListener.STAGE_UPLOADING);
+        String reference = stageMetrics.time(StageMetrics.UPLOAD, endpoint,
+                () -> transcriptionBackend.upload(audio, contentLength));
+        listener.onStage(TranscriptionProgressListener.STAGE_PROCESSING);
+        String transcribedText = stageMetrics.time(StageMetrics.TRANSCRIPTION, endpoint,
+                () -> TranscriptionBackend.await(transcriptionBackend.transcribe(reference)));
+        if (transcribedText != null) {
+            log.info("Transcription completed ({} characters)", transcribedText.length());
+            if (log.isDebugEnabled() && transcriptLogSampler.sample()) {
+                log.debug("Sampled transcript: {}", transcribedText);
             }
         }
-
-        // Wait with a timeout (e.g., 5 minutes)
-        boolean completed = process.waitFor(5, TimeUnit.MINUTES);
-        if (!completed) {
-            process.destroy();
-            throw new IOException("yt-dlp process timed out after 5 minutes");
-        }
-
-        int exitCode = process.exitValue();
-        if (exitCode != 0) {
-            throw new IOException("yt-dlp failed with exit code " + exitCode + ": " + processOutput.toString());
-        }
-
-        log.info("Successfully downloaded audio from YouTube URL: {}", youtubeUrl);
-    }
-
-    private boolean isYouTubeUrl(String url) {
-        return url != null && (url.contains("youtube.com") || url.contains("youtu.be"));
+        return transcribedText;
     }
 }
@@ -0,0 +1,72 @@
+package com.fyp.speechtotextservice.service;
+
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okio.BufferedSink;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * OkHttp request body that copies an InputStream straight into the upload connection
+ * through a fixed-size buffer borrowed from a small shared pool, so uploads never
+ * have to be materialised on disk or in memory first.
+ */
+public class StreamingUploadBody extends RequestBody {
+
+    static final int BUFFER_SIZE = 64 * 1024;
+    private static final int POOL_SIZE = 32;
+    private static final BlockingQueue<byte[]> BUFFER_POOL = new ArrayBlockingQueue<>(POOL_SIZE);
+    private static final MediaType OCTET_STREAM = MediaType.get("application/octet-stream");
+
+    private final InputStream source;
+    private final long contentLength;
+
+    /**
+     * @param source        stream to upload; it is consumed but not closed
+     * @param contentLength number of bytes in the stream, or -1 if unknown (chunked upload)
+     */
+    public StreamingUploadBody(InputStream source, long contentLength) {
+        this.source = source;
+        this.contentLength = contentLength;
+    }
+
+    @Override
+    public MediaType contentType() {
+        return OCTET_STREAM;
+    }
+
+    @Override
+    public long contentLength() {
+        return contentLength;
+    }
+
+    @Override
+    public boolean isOneShot() {
+        return true;
+    }
+
+    @Override
+    public void writeTo(BufferedSink sink) throws IOException {
+        byte[] buffer = acquireBuffer();
+        try {
+            int read;
+            while ((read = source.read(buffer)) != -1) {
+                sink.write(buffer, 0, read);
+            }
+        } finally {
+            releaseBuffer(buffer);
+        }
+    }
+
+    public static byte[] acquireBuffer() {
+        byte[] buffer = BUFFER_POOL.poll();
+        return buffer != null ? buffer : new byte[BUFFER_SIZE];
+    }
+
+    public static void releaseBuffer(byte[] buffer) {
+        BUFFER_POOL.offer(buffer);
+    }
+}
@@ -0,0 +1,279 @@
+package com.fyp.speechtotextservice.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * Content-addressed cache of finished transcripts. Keys are either a SHA-256 of the media bytes
+ * or a normalised YouTube video id. Entries live in a bounded LRU map with a TTL, optionally
+ * backed by a directory so they survive restarts, and concurrent misses for the same key share
+ * a single upstream transcription.
+ */
+@Slf4j
+@Component
+public class TranscriptCache {
+
+    @FunctionalInterface
+    public interface Loader {
+        String load() throws IOException;
+    }
+
+    private static final int DISK_SWEEP_INTERVAL = 100;
+
+    private final Map<String, Entry> entries;
+    private final Map<String, CompletableFuture<String>> inFlight = new ConcurrentHashMap<>();
+    private final AtomicInteger writesSinceSweep = new AtomicInteger();
+    private final int maxEntries;
+    private final Duration ttl;
+    private final Path diskDir;
+
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter coalesced;
+    private final Counter evictions;
+
+    public TranscriptCache(MeterRegistry meterRegistry,
+                           @Value("${transcript.cache.max-entries:1000}") int maxEntries,
+                           @Value("${transcript.cache.ttl:P7D}") Duration ttl,
+                           @Value("${transcript.cache.disk-dir:}") String diskDir) throws IOException {
+        this.maxEntries = maxEntries;
+        this.ttl = ttl;
+        this.diskDir = diskDir == null || diskDir.isBlank() ? null : Path.of(diskDir);
+        if (this.diskDir != null) {
+            Files.createDirectories(this.diskDir);
+        }
+
+        this.hits = Counter.builder("transcript.cache.requests").tag("result", "hit").register(meterRegistry);
+        this.misses = Counter.builder("transcript.cache.requests").tag("result", "miss").register(meterRegistry);
+        this.coalesced = Counter.builder("transcript.cache.coalesced").register(meterRegistry);
+        this.evictions = Counter.builder("transcript.cache.evictions").register(meterRegistry);
+
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                if (size() > TranscriptCache.this.maxEntries) {
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+        Gauge.builder("transcript.cache.size", this, TranscriptCache::size).register(meterRegistry);
+    }
+
+    /**
+     * Returns the cached transcript for the key, or runs the loader once for all concurrent
+     * callers asking for the same key and caches its result.
+     */
+    public String getOrLoad(String key, Loader loader) throws IOException {
+        String cached = lookup(key);
+        if (cached != null) {
+            hits.increment();
+            return cached;
+        }
+
+        CompletableFuture<String> mine = new CompletableFuture<>();
+        CompletableFuture<String> existing = inFlight.putIfAbsent(key, mine);
+        if (existing != null) {
+            coalesced.increment();
+            return await(existing);
+        }
+
+        try {
+            // Another caller may have finished between our lookup and claiming the key
+            cached = lookup(key);
+            if (cached != null) {
+                hits.increment();
+                mine.complete(cached);
+                return cached;
+            }
+
+            misses.increment();
+            String loaded = loader.load();
+            if (loaded != null) {
+                put(key, loaded);
+            }
+            mine.complete(loaded);
+            return loaded;
+        } catch (IOException | RuntimeException e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, mine);
+        }
+    }
+
+    public static String contentKey(InputStream media) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+        byte[] buffer = StreamingUploadBody.acquireBuffer();
+        try {
+            int read;
+            while ((read = media.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        } finally {
+            StreamingUploadBody.releaseBuffer(buffer);
+        }
+        return "sha256-" + HexFormat.of().formatHex(digest.digest());
+    }
+
+    public static String youTubeKey(String videoId) {
+        return "youtube-" + videoId;
+    }
+
+    private String lookup(String key) {
+        synchronized (entries) {
+            Entry entry = entries.get(key);
+            if (entry != null) {
+                if (!entry.isExpired(ttl)) {
+                    return entry.text;
+                }
+                entries.remove(key);
+                evictions.increment();
+            }
+        }
+        return readFromDisk(key);
+    }
+
+    private void put(String key, String text) {
+        put(key, text, Instant.now());
+        writeToDisk(key, text);
+    }
+
+    private void put(String key, String text, Instant createdAt) {
+        synchronized (entries) {
+            entries.put(key, new Entry(text, createdAt));
+        }
+    }
+
+    private int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    private String readFromDisk(String key) {
+        if (diskDir == null) {
+            return null;
+        }
+        Path file = diskDir.resolve(key + ".txt");
+        try {
+            if (!Files.exists(file)) {
+                return null;
+            }
+            Instant createdAt = Files.getLastModifiedTime(file).toInstant();
+            if (createdAt.plus(ttl).isBefore(Instant.now())) {
+                Files.deleteIfExists(file);
+                evictions.increment();
+                return null;
+            }
+            String text = Files.readString(file, StandardCharsets.UTF_8);
+            put(key, text, createdAt);
+            return text;
+        } catch (IOException e) {
+            log.warn("Could not read cached transcript {}: {}", file, e.getMessage());
+            return null;
+        }
+    }
+
+    private void writeToDisk(String key, String text) {
+        if (diskDir == null) {
+            return;
+        }
+        try {
+            Path temp = Files.createTempFile(diskDir, key, ".tmp");
+            Files.writeString(temp, text, StandardCharsets.UTF_8);
+            Files.move(temp, diskDir.resolve(key + ".txt"),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.warn("Could not persist cached transcript {}: {}", key, e.getMessage());
+        }
+        if (writesSinceSweep.incrementAndGet() >= DISK_SWEEP_INTERVAL) {
+            writesSinceSweep.set(0);
+            sweepDisk();
+        }
+    }
+
+    // Drop expired files and, beyond maxEntries, the oldest ones
+    private void sweepDisk() {
+        Instant cutoff = Instant.now().minus(ttl);
+        try (Stream<Path> files = Files.list(diskDir)) {
+            List<Path> transcripts = files
+                    .filter(path -> path.getFileName().toString().endsWith(".txt"))
+                    .sorted(Comparator.comparing(TranscriptCache::lastModified).reversed())
+                    .toList();
+            for (int i = 0; i < transcripts.size(); i++) {
+                Path file = transcripts.get(i);
+                if (i >= maxEntries || lastModified(file).toInstant().isBefore(cutoff)) {
+                    Files.deleteIfExists(file);
+                    evictions.increment();
+                }
+            }
+        } catch (IOException e) {
+            log.warn("Could not sweep transcript cache directory {}: {}", diskDir, e.getMessage());
+        }
+    }
+
+    private static FileTime lastModified(Path file) {
+        try {
+            return Files.getLastModifiedTime(file);
+        } catch (IOException e) {
+            return FileTime.fromMillis(0);
+        }
+    }
+
+    private static String await(CompletableFuture<String> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for transcription", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException ioException) {
+                throw ioException;
+            }
+            if (cause instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    private record Entry(String text, Instant createdAt) {
+        boolean isExpired(Duration ttl) {
+            return createdAt.plus(ttl).isBefore(Instant.now());
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package com.fyp.speechtotextservice.service;
+
+import com.fyp.speechtotextservice.dto.TranscriptionProgressEvent;
+import com.fyp.speechtotextservice.dto.TranscriptionResponse;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Opens Server-Sent Event streams that report transcription progress. While the work runs, an
+ * idle stream gets a comment line every heartbeat interval so proxies do not time it out; the
+ * request itself holds no thread in the meantime.
+ */
+@Slf4j
+@Component
+public class TranscriptionEventStreams {
+
+    public static final String EVENT_PARTIAL = "partial";
+    public static final String EVENT_COMPLETED = "completed";
+    public static final String EVENT_ERROR = "error";
+
+    private final ScheduledExecutorService heartbeats = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().name("sse-heartbeat").daemon().factory());
+    private final Duration timeout;
+    private final Duration heartbeatInterval;
+
+    public TranscriptionEventStreams(@Value("${transcription.events.timeout:PT1H}") Duration timeout,
+                                     @Value("${transcription.events.heartbeat-interval:PT15S}") Duration heartbeatInterval) {
+        this.timeout = timeout;
+        this.heartbeatInterval = heartbeatInterval;
+    }
+
+    public Stream open() {
+        return new Stream(new SseEmitter(timeout.toMillis()));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        heartbeats.shutdownNow();
+    }
+
+    /**
+     * One client's stream. Completion or failure ends it; if the client goes away first the
+     * work carries on and its result stays available as a job.
+     */
+    public final class Stream implements TranscriptionProgressListener {
+        private final SseEmitter emitter;
+        private final ScheduledFuture<?> heartbeat;
+        private volatile boolean closed;
+
+        private Stream(SseEmitter emitter) {
+            this.emitter = emitter;
+            long intervalMillis = heartbeatInterval.toMillis();
+            this.heartbeat = heartbeats.scheduleAtFixedRate(this::heartbeat, intervalMillis, intervalMillis,
+                    TimeUnit.MILLISECONDS);
+            emitter.onCompletion(this::close);
+            emitter.onTimeout(this::close);
+            emitter.onError(error -> close());
+        }
+
+        public SseEmitter getEmitter() {
+            return emitter;
+        }
+
+        @Override
+        public void onQueued(String jobId) {
+            send(STAGE_QUEUED, new TranscriptionProgressEvent(STAGE_QUEUED, jobId, null, null));
+        }
+
+        @Override
+        public void onStage(String stage) {
+            send(stage, new TranscriptionProgressEvent(stage, null, null, null));
+        }
+
+        @Override
+        public void onPartialText(String text) {
+            send(EVENT_PARTIAL, new TranscriptionProgressEvent(EVENT_PARTIAL, null, text, null));
+        }
+
+        @Override
+        public void onCompleted(TranscriptionResponse response) {
+            send(EVENT_COMPLETED, new TranscriptionProgressEvent(EVENT_COMPLETED, response.getId(), response.getText(), null));
+            complete();
+        }
+
+        @Override
+        public void onFailed(String error) {
+            send(EVENT_ERROR, new TranscriptionProgressEvent(EVENT_ERROR, null, null, error));
+            complete();
+        }
+
+        private void send(String name, TranscriptionProgressEvent event) {
+            if (closed) {
+                return;
+            }
+            try {
+                emitter.send(SseEmitter.event().name(name).data(event, MediaType.APPLICATION_JSON));
+            } catch (IOException | IllegalStateException e) {
+                log.debug("Progress stream client went away: {}", e.getMessage());
+                close();
+            }
+        }
+
+        private void heartbeat() {
+            if (closed) {
+                return;
+            }
+            try {
+                emitter.send(SseEmitter.event().comment("keep-alive"));
+            } catch (IOException | IllegalStateException e) {
+                close();
+            }
+        }
+
+        private void complete() {
+            if (!closed) {
+                close();
+                emitter.complete();
+            }
+        }
+
+        private void close() {
+            closed = true;
+            heartbeat.cancel(false);
+        }
+    }
+}
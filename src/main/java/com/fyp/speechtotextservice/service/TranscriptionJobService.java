@@ -0,0 +1,185 @@
+package com.fyp.speechtotextservice.service;
+
+import com.fyp.speechtotextservice.dto.TranscriptionResponse;
+import com.fyp.speechtotextservice.metrics.StageMetrics;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs transcriptions in the background so the request thread can return a job id straight away.
+ * Each job gets its own virtual thread; a fair semaphore caps how many run at once and jobs
+ * beyond the queue capacity are rejected up front.
+ */
+@Slf4j
+@Service
+public class TranscriptionJobService {
+
+    public static final String STATUS_QUEUED = "queued";
+    public static final String STATUS_PROCESSING = "processing";
+    public static final String STATUS_COMPLETED = "completed";
+    public static final String STATUS_ERROR = "error";
+
+    @FunctionalInterface
+    public interface JobTask {
+        TranscriptionResponse run() throws Exception;
+    }
+
+    private final Map<String, Job> jobs = new ConcurrentHashMap<>();
+    private final ExecutorService executor = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("transcription-job-", 0).factory());
+    private final Semaphore runningPermits;
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicInteger running = new AtomicInteger();
+    private final int queueCapacity;
+    private final Duration retention;
+    private final StageMetrics stageMetrics;
+
+    public TranscriptionJobService(MeterRegistry meterRegistry, StageMetrics stageMetrics,
+                                   @Value("${transcription.jobs.concurrency:8}") int concurrency,
+                                   @Value("${transcription.jobs.queue-capacity:100}") int queueCapacity,
+                                   @Value("${transcription.jobs.retention:PT1H}") Duration retention) {
+        this.queueCapacity = queueCapacity;
+        this.retention = retention;
+        this.stageMetrics = stageMetrics;
+        this.runningPermits = new Semaphore(concurrency, true);
+        Gauge.builder("transcription.jobs.queued", queued, AtomicInteger::get).register(meterRegistry);
+        Gauge.builder("transcription.jobs.running", running, AtomicInteger::get).register(meterRegistry);
+        Gauge.builder("transcription.jobs.stored", jobs, Map::size).register(meterRegistry);
+    }
+
+    /**
+     * Queues a transcription and returns the job id.
+     *
+     * @param endpoint the endpoint the job came from, for metrics
+     * @param task    the work to run once a slot is free
+     * @param cleanup run after the task finishes or fails, e.g. to delete a spooled upload; may be null
+     * @throws JobQueueFullException if the queue is already at capacity
+     */
+    public String submit(String endpoint, JobTask task, Runnable cleanup) {
+        return submit(endpoint, task, cleanup, TranscriptionProgressListener.NONE);
+    }
+
+    /**
+     * Like {@link #submit(String, JobTask, Runnable)}, also reporting the job's queueing and
+     * outcome to the listener.
+     */
+    public String submit(String endpoint, JobTask task, Runnable cleanup, TranscriptionProgressListener listener) {
+        purgeExpired();
+        if (queued.incrementAndGet() > queueCapacity) {
+            queued.decrementAndGet();
+            throw new JobQueueFullException(queueCapacity);
+        }
+        Job job = new Job(UUID.randomUUID().toString());
+        jobs.put(job.id, job);
+        listener.onQueued(job.id);
+        long submittedAt = System.nanoTime();
+        executor.execute(() -> execute(job, endpoint, submittedAt, task, cleanup, listener));
+        log.info("Queued transcription job {} ({} queued, {} running)", job.id, queued.get(), running.get());
+        return job.id;
+    }
+
+    public Optional<TranscriptionResponse> getJob(String id) {
+        return Optional.ofNullable(jobs.get(id)).map(Job::snapshot);
+    }
+
+    private void execute(Job job, String endpoint, long submittedAt, JobTask task, Runnable cleanup,
+                         TranscriptionProgressListener listener) {
+        boolean acquired = false;
+        try {
+            try {
+                runningPermits.acquire();
+            } catch (InterruptedException e) {
+                stageMetrics.record(StageMetrics.QUEUE, endpoint, StageMetrics.ERROR, System.nanoTime() - submittedAt);
+                throw e;
+            }
+            stageMetrics.record(StageMetrics.QUEUE, endpoint, StageMetrics.SUCCESS, System.nanoTime() - submittedAt);
+            acquired = true;
+            queued.decrementAndGet();
+            running.incrementAndGet();
+            job.update(STATUS_PROCESSING, null, null);
+
+            TranscriptionResponse result = task.run();
+            job.update(STATUS_COMPLETED, result.getText(), null);
+            result.setId(job.id);
+            listener.onCompleted(result);
+            log.info("Transcription job {} completed", job.id);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            job.update(STATUS_ERROR, null, "Job was interrupted");
+            listener.onFailed("Job was interrupted");
+        } catch (Exception e) {
+            log.error("Transcription job {} failed", job.id, e);
+            job.update(STATUS_ERROR, null, e.getMessage());
+            listener.onFailed(e.getMessage());
+        } finally {
+            if (acquired) {
+                running.decrementAndGet();
+                runningPermits.release();
+            } else {
+                queued.decrementAndGet();
+            }
+            job.finishedAt = Instant.now();
+            if (cleanup != null) {
+                cleanup.run();
+            }
+        }
+    }
+
+    private void purgeExpired() {
+        Instant cutoff = Instant.now().minus(retention);
+        jobs.values().removeIf(job -> job.finishedAt != null && job.finishedAt.isBefore(cutoff));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private static final class Job {
+        private final String id;
+        private volatile String status = STATUS_QUEUED;
+        private volatile String text;
+        private volatile String error;
+        private volatile Instant finishedAt;
+
+        private Job(String id) {
+            this.id = id;
+        }
+
+        private synchronized void update(String status, String text, String error) {
+            this.status = status;
+            this.text = text;
+            this.error = error;
+        }
+
+        private synchronized TranscriptionResponse snapshot() {
+            TranscriptionResponse response = new TranscriptionResponse();
+            response.setId(id);
+            response.setStatus(status);
+            response.setText(text);
+            response.setError(error);
+            return response;
+        }
+    }
+
+    public static class JobQueueFullException extends RuntimeException {
+        public JobQueueFullException(int queueCapacity) {
+            super("Transcription queue is full (" + queueCapacity + " jobs waiting)");
+        }
+    }
+}
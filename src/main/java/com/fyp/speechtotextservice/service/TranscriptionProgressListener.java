@@ -0,0 +1,40 @@
+package com.fyp.speechtotextservice.service;
+
+import com.fyp.speechtotextservice.dto.TranscriptionResponse;
+
+/**
+ * Receives the progress of one transcription as it moves through its stages. Callbacks come
+ * from whichever thread is doing the work, possibly several at once for segmented media.
+ */
+public interface TranscriptionProgressListener {
+
+    String STAGE_RECEIVED = "received";
+    String STAGE_QUEUED = "queued";
+    String STAGE_DOWNLOADING = "downloading";
+    String STAGE_UPLOADING = "uploading";
+    String STAGE_PROCESSING = "processing";
+
+    TranscriptionProgressListener NONE = new TranscriptionProgressListener() {
+    };
+
+    /**
+     * The transcription was queued as a background job.
+     */
+    default void onQueued(String jobId) {
+    }
+
+    default void onStage(String stage) {
+    }
+
+    /**
+     * Transcript text available so far, replacing any earlier partial text.
+     */
+    default void onPartialText(String text) {
+    }
+
+    default void onCompleted(TranscriptionResponse response) {
+    }
+
+    default void onFailed(String error) {
+    }
+}
@@ -0,0 +1,341 @@
+package com.fyp.speechtotextservice.service;
+
+import com.fyp.speechtotextservice.config.AssemblyAIConfig;
+import com.fyp.speechtotextservice.metrics.StageMetrics;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.io.BufferedReader;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+/**
+ * Runs yt-dlp with its output on stdout and hands that stream straight to the caller, so the
+ * upload overlaps the download. Concurrent yt-dlp processes are capped by a fair semaphore, and
+ * downloaded audio is teed into a size-bounded cache keyed by video id.
+ */
+@Slf4j
+@Component
+public class YouTubeAudioDownloader {
+
+    @FunctionalInterface
+    public interface AudioConsumer<T> {
+        /**
+         * @param audio  the audio bytes; the consumer must read them to the end
+         * @param length number of bytes, or -1 while still downloading
+         */
+        T accept(InputStream audio, long length) throws IOException;
+    }
+
+    private static final int STDERR_TAIL_LINES = 20;
+
+    private final AssemblyAIConfig config;
+    private final StageMetrics stageMetrics;
+    private final Semaphore processPermits;
+    private final Duration timeout;
+    private final Path cacheDir;
+    private final long maxCacheBytes;
+    private final ScheduledExecutorService watchdog = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().name("yt-dlp-watchdog").daemon().factory());
+
+    private final Timer queueWait;
+    private final Counter cacheHits;
+    private final Counter cacheMisses;
+    private final Counter cacheEvictions;
+
+    public YouTubeAudioDownloader(AssemblyAIConfig config, MeterRegistry meterRegistry, StageMetrics stageMetrics,
+                                  @Value("${youtube.downloader.max-concurrent:4}") int maxConcurrent,
+                                  @Value("${youtube.downloader.timeout:PT5M}") Duration timeout,
+                                  @Value("${youtube.audio-cache.dir:${java.io.tmpdir}/yt-audio-cache}") String cacheDir,
+                                  @Value("${youtube.audio-cache.max-size:2GB}") DataSize maxCacheSize) throws IOException {
+        this.config = config;
+        this.stageMetrics = stageMetrics;
+        this.processPermits = new Semaphore(maxConcurrent, true);
+        this.timeout = timeout;
+        this.cacheDir = Files.createDirectories(Path.of(cacheDir));
+        this.maxCacheBytes = maxCacheSize.toBytes();
+
+        this.queueWait = Timer.builder("youtube.download.queue.wait").register(meterRegistry);
+        this.cacheHits = Counter.builder("youtube.audio_cache.requests").tag("result", "hit").register(meterRegistry);
+        this.cacheMisses = Counter.builder("youtube.audio_cache.requests").tag("result", "miss").register(meterRegistry);
+        this.cacheEvictions = Counter.builder("youtube.audio_cache.evictions").register(meterRegistry);
+        Gauge.builder("youtube.download.active", processPermits, permits -> maxConcurrent - permits.availablePermits())
+                .register(meterRegistry);
+        Gauge.builder("youtube.download.queued", processPermits, Semaphore::getQueueLength).register(meterRegistry);
+    }
+
+    /**
+     * Streams the audio of a YouTube video to the consumer, from the cache if present.
+     *
+     * @param videoId normalised video id used as cache key, or null to bypass the cache
+     */
+    public <T> T withAudio(String youtubeUrl, String videoId, AudioConsumer<T> consumer) throws IOException {
+        Path cached = videoId == null ? null : cacheDir.resolve(videoId + ".audio");
+        if (cached != null && Files.exists(cached)) {
+            cacheHits.increment();
+            Files.setLastModifiedTime(cached, FileTime.from(Instant.now()));
+            log.info("Using cached audio for YouTube video {}", videoId);
+            try (InputStream in = Files.newInputStream(cached)) {
+                return consumer.accept(in, Files.size(cached));
+            }
+        }
+        cacheMisses.increment();
+
+        long queuedAt = System.nanoTime();
+        try {
+            processPermits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for a yt-dlp slot", e);
+        }
+        queueWait.record(System.nanoTime() - queuedAt, TimeUnit.NANOSECONDS);
+        // From here the stream owns the permit and gives it back once yt-dlp is done, not the consumer
+        try (ProcessAudioStream audio = startDownload(youtubeUrl, cached)) {
+            T result = consumer.accept(audio, -1);
+            // Make sure the whole stream was seen, so the exit status is checked
+            audio.transferTo(OutputStream.nullOutputStream());
+            return result;
+        }
+    }
+
+    private ProcessAudioStream startDownload(String youtubeUrl, Path cached) throws IOException {
+        log.info("Downloading audio from YouTube URL: {}", youtubeUrl);
+
+        // Build the yt-dlp command to write the best audio stream in its native format to stdout
+        ProcessBuilder pb = new ProcessBuilder(
+                config.getYtDlpPath(),
+                "-f", "bestaudio",
+                "--no-progress",
+                "--no-playlist",
+                "-o", "-",
+                youtubeUrl
+        );
+        long startNanos = System.nanoTime();
+        Path partial = null;
+        try {
+            partial = cached == null ? null : Files.createTempFile(cacheDir, "download-", ".part");
+            OutputStream cacheOut = partial == null ? OutputStream.nullOutputStream() : Files.newOutputStream(partial);
+            Process process;
+            try {
+                process = pb.start();
+            } catch (IOException e) {
+                cacheOut.close();
+                throw e;
+            }
+            return new ProcessAudioStream(youtubeUrl, process, cacheOut, partial, cached, startNanos);
+        } catch (IOException | RuntimeException e) {
+            if (partial != null) {
+                Files.deleteIfExists(partial);
+            }
+            stageMetrics.record(StageMetrics.DOWNLOAD, StageMetrics.ENDPOINT_LINK, StageMetrics.ERROR,
+                    System.nanoTime() - startNanos);
+            processPermits.release();
+            throw e;
+        }
+    }
+
+    private void evictIfNeeded() {
+        try (Stream<Path> files = Files.list(cacheDir)) {
+            List<Path> entries = files
+                    .filter(path -> path.getFileName().toString().endsWith(".audio"))
+                    .sorted(Comparator.comparing(YouTubeAudioDownloader::lastModified).reversed())
+                    .toList();
+            long total = 0;
+            for (Path entry : entries) {
+                total += Files.size(entry);
+                if (total > maxCacheBytes) {
+                    Files.deleteIfExists(entry);
+                    cacheEvictions.increment();
+                }
+            }
+        } catch (IOException e) {
+            log.warn("Could not evict from audio cache {}: {}", cacheDir, e.getMessage());
+        }
+    }
+
+    private static FileTime lastModified(Path file) {
+        try {
+            return Files.getLastModifiedTime(file);
+        } catch (IOException e) {
+            return FileTime.fromMillis(0);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        watchdog.shutdownNow();
+    }
+
+    /**
+     * yt-dlp's stdout, copied into the cache file as it is read. At end of stream it waits for
+     * the process and fails if yt-dlp did, so a broken download never looks like a short one.
+     * The download is finished there: the cache file is put in place, the download stage is
+     * timed and the yt-dlp slot is freed, while the consumer may still be busy transcribing.
+     */
+    private final class ProcessAudioStream extends FilterInputStream {
+        private final String youtubeUrl;
+        private final Process process;
+        private final OutputStream cacheOut;
+        private final Path partial;
+        private final Path cached;
+        private final long startNanos;
+        private final StderrTail stderrTail;
+        private final ScheduledFuture<?> kill;
+        private final AtomicBoolean finished = new AtomicBoolean();
+
+        private ProcessAudioStream(String youtubeUrl, Process process, OutputStream cacheOut, Path partial, Path cached,
+                                   long startNanos) {
+            super(process.getInputStream());
+            this.youtubeUrl = youtubeUrl;
+            this.process = process;
+            this.cacheOut = cacheOut;
+            this.partial = partial;
+            this.cached = cached;
+            this.startNanos = startNanos;
+            this.stderrTail = new StderrTail(process);
+            this.kill = watchdog.schedule(process::destroyForcibly, timeout.toMillis(), TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] single = new byte[1];
+            int read = read(single, 0, 1);
+            return read == -1 ? -1 : single[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read = super.read(b, off, len);
+            if (read > 0) {
+                cacheOut.write(b, off, read);
+            } else if (read == -1) {
+                checkExit();
+            }
+            return read;
+        }
+
+        @Override
+        public void close() throws IOException {
+            // Closed before the end of the stream, e.g. because the consumer failed
+            finish(false);
+            super.close();
+        }
+
+        private void checkExit() throws IOException {
+            if (finished.get()) {
+                return;
+            }
+            boolean succeeded = false;
+            try {
+                if (!process.waitFor(timeout.toMillis(), TimeUnit.MILLISECONDS)) {
+                    throw new IOException("yt-dlp process timed out after " + timeout);
+                }
+                int exitCode = process.exitValue();
+                if (exitCode != 0) {
+                    throw new IOException("yt-dlp failed with exit code " + exitCode + ": " + stderrTail.text());
+                }
+                succeeded = true;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while waiting for yt-dlp", e);
+            } finally {
+                finish(succeeded);
+            }
+        }
+
+        private void finish(boolean succeeded) {
+            if (!finished.compareAndSet(false, true)) {
+                return;
+            }
+            try {
+                kill.cancel(false);
+                if (process.isAlive()) {
+                    process.destroyForcibly();
+                }
+                cacheOut.close();
+                if (succeeded && partial != null) {
+                    Files.move(partial, cached, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                    evictIfNeeded();
+                }
+            } catch (IOException e) {
+                // The audio itself arrived; only caching it failed
+                log.warn("Could not cache audio from {}: {}", youtubeUrl, e.getMessage());
+            } finally {
+                if (partial != null) {
+                    try {
+                        Files.deleteIfExists(partial);
+                    } catch (IOException e) {
+                        log.warn("Failed to delete partial download {}: {}", partial, e.getMessage());
+                    }
+                }
+                // Overlaps the upload, which reads the audio as it arrives, but not the transcription after it
+                stageMetrics.record(StageMetrics.DOWNLOAD, StageMetrics.ENDPOINT_LINK,
+                        succeeded ? StageMetrics.SUCCESS : StageMetrics.ERROR, System.nanoTime() - startNanos);
+                processPermits.release();
+            }
+            if (succeeded) {
+                log.info("Successfully downloaded audio from YouTube URL: {}", youtubeUrl);
+            }
+        }
+    }
+
+    // Keeps the last few stderr lines for error messages without letting the pipe fill up
+    private static final class StderrTail {
+        private final Deque<String> lines = new ArrayDeque<>();
+        private final Thread drainer;
+
+        private StderrTail(Process process) {
+            this.drainer = Thread.ofVirtual().name("yt-dlp-stderr").start(() -> {
+                try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getErrorStream()))) {
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        log.debug("yt-dlp: {}", line);
+                        synchronized (lines) {
+                            if (lines.size() == STDERR_TAIL_LINES) {
+                                lines.removeFirst();
+                            }
+                            lines.addLast(line);
+                        }
+                    }
+                } catch (IOException ignored) {
+                    // process gone
+                }
+            });
+        }
+
+        String text() throws InterruptedException {
+            // The process has exited, so the rest of its output is already in the pipe
+            drainer.join(Duration.ofSeconds(1));
+            synchronized (lines) {
+                return String.join("\n", lines);
+            }
+        }
+    }
+}
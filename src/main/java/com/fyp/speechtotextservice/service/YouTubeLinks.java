@@ -0,0 +1,68 @@
+package com.fyp.speechtotextservice.service;
+
+import java.net.URI;
+import java.util.Optional;
+import java.util.regex.Pattern;
+
+/**
+ * Helpers for recognising YouTube links and normalising them to a video id, so that
+ * youtu.be, watch?v=, shorts and embed links for the same video are treated alike.
+ */
+public final class YouTubeLinks {
+
+    private static final Pattern VIDEO_ID = Pattern.compile("[A-Za-z0-9_-]{11}");
+
+    private YouTubeLinks() {
+    }
+
+    public static boolean isYouTubeUrl(String url) {
+        return url != null && (url.contains("youtube.com") || url.contains("youtu.be"));
+    }
+
+    public static Optional<String> extractVideoId(String url) {
+        if (!isYouTubeUrl(url)) {
+            return Optional.empty();
+        }
+        URI uri;
+        try {
+            uri = URI.create(url.trim());
+        } catch (IllegalArgumentException e) {
+            return Optional.empty();
+        }
+        String host = uri.getHost() == null ? "" : uri.getHost().toLowerCase();
+        String path = uri.getPath() == null ? "" : uri.getPath();
+
+        String candidate = null;
+        if (host.endsWith("youtu.be")) {
+            candidate = firstSegment(path);
+        } else if (path.startsWith("/watch")) {
+            candidate = queryParam(uri.getRawQuery(), "v");
+        } else if (path.startsWith("/shorts/") || path.startsWith("/embed/") || path.startsWith("/live/")
+                || path.startsWith("/v/")) {
+            candidate = firstSegment(path.substring(path.indexOf('/', 1)));
+        }
+        if (candidate != null && VIDEO_ID.matcher(candidate).matches()) {
+            return Optional.of(candidate);
+        }
+        return Optional.empty();
+    }
+
+    private static String firstSegment(String path) {
+        String trimmed = path.startsWith("/") ? path.substring(1) : path;
+        int slash = trimmed.indexOf('/');
+        return slash >= 0 ? trimmed.substring(0, slash) : trimmed;
+    }
+
+    private static String queryParam(String query, String name) {
+        if (query == null) {
+            return null;
+        }
+        for (String pair : query.split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq > 0 && pair.substring(0, eq).equals(name)) {
+                return pair.substring(eq + 1);
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,165 @@
+package com.fyp.speechtotextservice.service.backend;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fyp.speechtotextservice.config.AssemblyAIConfig;
+import com.fyp.speechtotextservice.service.StreamingUploadBody;
+import lombok.extern.slf4j.Slf4j;
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import org.jetbrains.annotations.NotNull;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * AssemblyAI over its REST API: streams uploads, submits the transcript job and hands it to the
+ * {@link TranscriptPoller}, so no thread is blocked while AssemblyAI is processing.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "transcription.backend", havingValue = "assemblyai", matchIfMissing = true)
+public class AssemblyAITranscriptionBackend implements TranscriptionBackend {
+
+    private static final MediaType JSON = MediaType.get("application/json");
+    // Rough bitrate of compressed audio, only used to pace the first status polls
+    private static final double ESTIMATED_BYTES_PER_SECOND = 16_000;
+    static final String WEBHOOK_AUTH_HEADER = "X-Webhook-Secret";
+    // Uploads that are never transcribed (e.g. a sibling segment failed) leave their size behind
+    private static final int MAX_UPLOAD_SIZES = 1024;
+
+    private final AssemblyAIConfig config;
+    private final OkHttpClient client;
+    private final ObjectMapper objectMapper;
+    private final TranscriptPoller poller;
+    // Upload sizes only pace the first polls, so the oldest are simply dropped beyond the limit
+    private final Map<String, Long> uploadSizes = Collections.synchronizedMap(new LinkedHashMap<>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+            return size() > MAX_UPLOAD_SIZES;
+        }
+    });
+
+    public AssemblyAITranscriptionBackend(AssemblyAIConfig config, OkHttpClient client, ObjectMapper objectMapper,
+                                          TranscriptPoller poller) {
+        this.config = config;
+        this.client = client;
+        this.objectMapper = objectMapper;
+        this.poller = poller;
+    }
+
+    // Pipe the stream into AssemblyAI's upload endpoint and return the resulting upload URL
+    @Override
+    public String upload(InputStream media, long contentLength) throws IOException {
+        Request uploadRequest = new Request.Builder()
+                .url(config.getAssemblyAIBaseUrl() + "/upload")
+                .header("authorization", config.getApiKey())
+                .post(new StreamingUploadBody(media, contentLength))
+                .build();
+
+        try (Response uploadResponse = client.newCall(uploadRequest).execute()) {
+            ResponseBody body = uploadResponse.body();
+            if (!uploadResponse.isSuccessful() || body == null) {
+                throw new IOException("Upload failed with HTTP " + uploadResponse.code());
+            }
+            String uploadUrl = objectMapper.readTree(body.byteStream()).path("upload_url").asText(null);
+            if (uploadUrl == null) {
+                throw new IOException("Upload response did not contain an upload_url");
+            }
+            if (contentLength > 0) {
+                uploadSizes.put(uploadUrl, contentLength);
+            }
+            return uploadUrl;
+        }
+    }
+
+    @Override
+    public CompletableFuture<String> transcribe(String uploadUrl) {
+        return transcribeDetailed(uploadUrl).thenApply(TranscriptResult::text);
+    }
+
+    @Override
+    public CompletableFuture<TranscriptResult> transcribeDetailed(String uploadUrl) {
+        Long size = uploadSizes.remove(uploadUrl);
+        double expectedSeconds = size == null ? 0 : size / ESTIMATED_BYTES_PER_SECOND;
+        return submit(uploadUrl)
+                .thenCompose(transcriptId -> poller.track(transcriptId, expectedSeconds))
+                .thenApply(this::toResult);
+    }
+
+    private TranscriptResult toResult(JsonNode transcript) {
+        log.info("Detected language: {}", transcript.path("language_code").asText("unknown"));
+        String text = transcript.path("text").asText(null);
+        if (text == null) {
+            log.warn("Transcription completed but no text was returned.");
+        }
+        List<TranscriptResult.Word> words = new ArrayList<>();
+        for (JsonNode word : transcript.path("words")) {
+            words.add(new TranscriptResult.Word(word.path("text").asText(),
+                    word.path("start").asLong(), word.path("end").asLong()));
+        }
+        return new TranscriptResult(text, words);
+    }
+
+    private CompletableFuture<String> submit(String uploadUrl) {
+        // Configure transcription with automatic language detection
+        ObjectNode params = objectMapper.createObjectNode()
+                .put("audio_url", uploadUrl)
+                .put("language_detection", true);
+        if (poller.isWebhookEnabled()) {
+            params.put("webhook_url", config.getWebhookUrl());
+            if (config.getWebhookSecret() != null && !config.getWebhookSecret().isBlank()) {
+                params.put("webhook_auth_header_name", WEBHOOK_AUTH_HEADER);
+                params.put("webhook_auth_header_value", config.getWebhookSecret());
+            }
+        }
+
+        Request submitRequest = new Request.Builder()
+                .url(config.getAssemblyAIBaseUrl() + "/transcript")
+                .header("authorization", config.getApiKey())
+                .post(RequestBody.create(params.toString(), JSON))
+                .build();
+
+        CompletableFuture<String> transcriptId = new CompletableFuture<>();
+        client.newCall(submitRequest).enqueue(new Callback() {
+            @Override
+            public void onFailure(@NotNull Call call, @NotNull IOException e) {
+                transcriptId.completeExceptionally(e);
+            }
+
+            @Override
+            public void onResponse(@NotNull Call call, @NotNull Response response) {
+                try (response) {
+                    ResponseBody body = response.body();
+                    if (!response.isSuccessful() || body == null) {
+                        throw new IOException("Transcript submission failed with HTTP " + response.code());
+                    }
+                    String id = objectMapper.readTree(body.byteStream()).path("id").asText(null);
+                    if (id == null) {
+                        throw new IOException("Transcript submission response did not contain an id");
+                    }
+                    log.info("Submitted transcript {}", id);
+                    transcriptId.complete(id);
+                } catch (IOException e) {
+                    transcriptId.completeExceptionally(e);
+                }
+            }
+        });
+        return transcriptId;
+    }
+}
@@ -0,0 +1,84 @@
+package com.fyp.speechtotextservice.service.backend;
+
+import com.fyp.speechtotextservice.service.StreamingUploadBody;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * In-process backend for offline throughput runs and tests. It reads the whole upload,
+ * then returns a transcript derived only from the media's length and checksum after a
+ * configurable delay, so results are deterministic for identical input.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "transcription.backend", havingValue = "stub")
+public class StubTranscriptionBackend implements TranscriptionBackend {
+
+    private static final String REFERENCE_PREFIX = "stub://";
+    private static final long STUB_WORD_MILLIS = 300;
+
+    private final Duration latency;
+    private final Duration latencyPerMegabyte;
+
+    public StubTranscriptionBackend(@Value("${transcription.stub.latency:PT0.5S}") Duration latency,
+                                    @Value("${transcription.stub.latency-per-mb:PT0S}") Duration latencyPerMegabyte) {
+        this.latency = latency;
+        this.latencyPerMegabyte = latencyPerMegabyte;
+        log.warn("Using stub transcription backend; transcripts are synthetic");
+    }
+
+    @Override
+    public String upload(InputStream media, long contentLength) throws IOException {
+        CRC32 checksum = new CRC32();
+        long total = 0;
+        byte[] buffer = StreamingUploadBody.acquireBuffer();
+        try {
+            int read;
+            while ((read = media.read(buffer)) != -1) {
+                checksum.update(buffer, 0, read);
+                total += read;
+            }
+        } finally {
+            StreamingUploadBody.releaseBuffer(buffer);
+        }
+        return REFERENCE_PREFIX + total + "/" + Long.toHexString(checksum.getValue());
+    }
+
+    @Override
+    public CompletableFuture<String> transcribe(String mediaReference) {
+        if (!mediaReference.startsWith(REFERENCE_PREFIX)) {
+            return CompletableFuture.failedFuture(new IOException("Unknown media reference: " + mediaReference));
+        }
+        String[] parts = mediaReference.substring(REFERENCE_PREFIX.length()).split("/");
+        long bytes = Long.parseLong(parts[0]);
+        long delayMillis = latency.toMillis() + latencyPerMegabyte.toMillis() * bytes / (1024 * 1024);
+
+        String text = "Stub transcript of " + bytes + " bytes (checksum " + parts[1] + ").";
+        return CompletableFuture.supplyAsync(() -> text,
+                CompletableFuture.delayedExecutor(delayMillis, TimeUnit.MILLISECONDS));
+    }
+
+    // Words are spaced evenly so segmented runs have timings to stitch
+    @Override
+    public CompletableFuture<TranscriptResult> transcribeDetailed(String mediaReference) {
+        return transcribe(mediaReference).thenApply(text -> {
+            List<TranscriptResult.Word> words = new ArrayList<>();
+            String[] tokens = text.split(" ");
+            for (int i = 0; i < tokens.length; i++) {
+                words.add(new TranscriptResult.Word(tokens[i], i * STUB_WORD_MILLIS, (i + 1) * STUB_WORD_MILLIS - 50));
+            }
+            return new TranscriptResult(text, words);
+        });
+    }
+}
@@ -0,0 +1,237 @@
+package com.fyp.speechtotextservice.service.backend;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fyp.speechtotextservice.config.AssemblyAIConfig;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import org.jetbrains.annotations.NotNull;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tracks every in-flight AssemblyAI transcript from a single scheduler thread. Status checks
+ * are issued asynchronously on the shared OkHttp dispatcher, so a pending transcript costs a
+ * map entry rather than a blocked thread.
+ * <p>
+ * Poll intervals adapt to the expected audio length: short clips are checked after a few hundred
+ * milliseconds, long recordings less often, and every unfinished check backs off further. When a
+ * webhook URL is configured, polling only serves as a slow fallback and the webhook triggers an
+ * immediate check. A transcript that AssemblyAI does not know or will not show us (a 4xx other
+ * than 429), or that is still unfinished after the maximum duration, fails instead of being
+ * polled forever.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "transcription.backend", havingValue = "assemblyai", matchIfMissing = true)
+public class TranscriptPoller {
+
+    private final AssemblyAIConfig config;
+    private final OkHttpClient client;
+    private final ObjectMapper objectMapper;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().name("transcript-poller").daemon().factory());
+    private final Map<String, Pending> pending = new ConcurrentHashMap<>();
+
+    private final long minIntervalMillis;
+    private final long maxIntervalMillis;
+    private final double durationFactor;
+    private final double backoffMultiplier;
+    private final long webhookFallbackMillis;
+    private final Duration maxDuration;
+
+    public TranscriptPoller(AssemblyAIConfig config, OkHttpClient client, ObjectMapper objectMapper,
+                            MeterRegistry meterRegistry,
+                            @Value("${assemblyai.poll.min-interval:PT0.25S}") Duration minInterval,
+                            @Value("${assemblyai.poll.max-interval:PT15S}") Duration maxInterval,
+                            @Value("${assemblyai.poll.duration-factor:0.05}") double durationFactor,
+                            @Value("${assemblyai.poll.backoff-multiplier:1.5}") double backoffMultiplier,
+                            @Value("${assemblyai.poll.webhook-fallback-interval:PT30S}") Duration webhookFallback,
+                            @Value("${assemblyai.poll.max-duration:PT3H}") Duration maxDuration) {
+        this.config = config;
+        this.client = client;
+        this.objectMapper = objectMapper;
+        this.minIntervalMillis = minInterval.toMillis();
+        this.maxIntervalMillis = maxInterval.toMillis();
+        this.durationFactor = durationFactor;
+        this.backoffMultiplier = backoffMultiplier;
+        this.webhookFallbackMillis = webhookFallback.toMillis();
+        this.maxDuration = maxDuration;
+        Gauge.builder("transcription.pending", pending, Map::size)
+                .description("Submitted transcripts waiting for completion")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Starts tracking a submitted transcript.
+     *
+     * @param transcriptId         id returned by the submit call
+     * @param expectedAudioSeconds rough audio length used to pace the first polls, or 0 if unknown
+     * @return completes with the finished transcript JSON, or exceptionally if AssemblyAI reports an error
+     */
+    public CompletableFuture<JsonNode> track(String transcriptId, double expectedAudioSeconds) {
+        Pending entry = new Pending(transcriptId, expectedAudioSeconds);
+        pending.put(transcriptId, entry);
+        schedule(entry, nextDelayMillis(entry));
+        return entry.result;
+    }
+
+    /**
+     * Called when AssemblyAI reports completion through the webhook; checks the transcript now.
+     */
+    public void onWebhook(String transcriptId) {
+        Pending entry = pending.get(transcriptId);
+        if (entry != null) {
+            schedule(entry, 0);
+        }
+    }
+
+    public boolean isWebhookEnabled() {
+        return config.getWebhookUrl() != null && !config.getWebhookUrl().isBlank();
+    }
+
+    private void schedule(Pending entry, long delayMillis) {
+        synchronized (entry) {
+            if (entry.scheduled != null) {
+                entry.scheduled.cancel(false);
+            }
+            entry.scheduled = scheduler.schedule(() -> poll(entry), delayMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void poll(Pending entry) {
+        synchronized (entry) {
+            if (entry.inFlight || entry.result.isDone()) {
+                return;
+            }
+            entry.inFlight = true;
+            entry.attempts++;
+        }
+        Request request = new Request.Builder()
+                .url(config.getAssemblyAIBaseUrl() + "/transcript/" + entry.id)
+                .header("authorization", config.getApiKey())
+                .get()
+                .build();
+        client.newCall(request).enqueue(new Callback() {
+            @Override
+            public void onFailure(@NotNull Call call, @NotNull IOException e) {
+                log.warn("Polling transcript {} failed: {}", entry.id, e.getMessage());
+                reschedule(entry);
+            }
+
+            @Override
+            public void onResponse(@NotNull Call call, @NotNull Response response) {
+                try (response) {
+                    ResponseBody body = response.body();
+                    if (isPermanentFailure(response.code())) {
+                        log.warn("Polling transcript {} returned HTTP {}, giving up", entry.id, response.code());
+                        finish(entry).completeExceptionally(new IOException(
+                                "Polling transcript " + entry.id + " failed with HTTP " + response.code()));
+                        return;
+                    }
+                    if (!response.isSuccessful() || body == null) {
+                        log.warn("Polling transcript {} returned HTTP {}", entry.id, response.code());
+                        reschedule(entry);
+                        return;
+                    }
+                    handleStatus(entry, objectMapper.readTree(body.byteStream()));
+                } catch (IOException e) {
+                    log.warn("Could not read status of transcript {}: {}", entry.id, e.getMessage());
+                    reschedule(entry);
+                }
+            }
+        });
+    }
+
+    private void handleStatus(Pending entry, JsonNode transcript) {
+        String status = transcript.path("status").asText();
+        switch (status) {
+            case "completed" -> finish(entry).complete(transcript);
+            case "error" -> finish(entry).completeExceptionally(
+                    new IOException("Transcription failed: " + transcript.path("error").asText("unknown error")));
+            default -> {
+                if (transcript.hasNonNull("audio_duration")) {
+                    entry.expectedAudioSeconds = transcript.get("audio_duration").asDouble();
+                }
+                reschedule(entry);
+            }
+        }
+    }
+
+    private CompletableFuture<JsonNode> finish(Pending entry) {
+        pending.remove(entry.id);
+        log.debug("Transcript {} finished after {} polls", entry.id, entry.attempts);
+        return entry.result;
+    }
+
+    private void reschedule(Pending entry) {
+        synchronized (entry) {
+            entry.inFlight = false;
+        }
+        if (System.nanoTime() - entry.startedAt > maxDuration.toNanos()) {
+            log.warn("Transcript {} still unfinished after {}, giving up", entry.id, maxDuration);
+            finish(entry).completeExceptionally(new IOException(
+                    "Transcript " + entry.id + " did not finish within " + maxDuration));
+            return;
+        }
+        schedule(entry, nextDelayMillis(entry));
+    }
+
+    // Client errors will not go away by asking again, except for rate limiting
+    private static boolean isPermanentFailure(int code) {
+        return code >= 400 && code < 500 && code != 429;
+    }
+
+    private long nextDelayMillis(Pending entry) {
+        if (isWebhookEnabled()) {
+            return webhookFallbackMillis;
+        }
+        double base = entry.expectedAudioSeconds > 0
+                ? entry.expectedAudioSeconds * durationFactor * 1000
+                : minIntervalMillis;
+        double delay = base * Math.pow(backoffMultiplier, Math.max(0, entry.attempts - 1));
+        return Math.max(minIntervalMillis, Math.min(maxIntervalMillis, (long) delay));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+        pending.values().forEach(entry -> entry.result.completeExceptionally(
+                new IOException("Service shutting down")));
+        pending.clear();
+    }
+
+    private static final class Pending {
+        private final String id;
+        private final CompletableFuture<JsonNode> result = new CompletableFuture<>();
+        private final long startedAt = System.nanoTime();
+        private volatile double expectedAudioSeconds;
+        private int attempts;
+        private boolean inFlight;
+        private ScheduledFuture<?> scheduled;
+
+        private Pending(String id, double expectedAudioSeconds) {
+            this.id = id;
+            this.expectedAudioSeconds = expectedAudioSeconds;
+        }
+    }
+}
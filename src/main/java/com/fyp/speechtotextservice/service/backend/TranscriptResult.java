@@ -0,0 +1,17 @@
+package com.fyp.speechtotextservice.service.backend;
+
+import java.util.List;
+
+/**
+ * Transcript text with word-level timings in milliseconds from the start of the media.
+ * Words may be empty if the backend does not report them.
+ */
+public record TranscriptResult(String text, List<Word> words) {
+
+    public record Word(String text, long startMs, long endMs) {
+
+        public Word shift(long offsetMs) {
+            return new Word(text, startMs + offsetMs, endMs + offsetMs);
+        }
+    }
+}
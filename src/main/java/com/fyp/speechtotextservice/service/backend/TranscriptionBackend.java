@@ -0,0 +1,70 @@
+package com.fyp.speechtotextservice.service.backend;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Engine that turns uploaded media into text. Selected with the {@code transcription.backend}
+ * property: {@code assemblyai} (default) or {@code stub} for offline runs.
+ */
+public interface TranscriptionBackend {
+
+    // Well past assemblyai.poll.max-duration; only catches a future that nothing will ever complete
+    Duration AWAIT_TIMEOUT = Duration.ofHours(6);
+
+    /**
+     * Streams the media to the backend.
+     *
+     * @param media         the media bytes; consumed but not closed
+     * @param contentLength number of bytes in the stream, or -1 if unknown
+     * @return a reference to pass to {@link #transcribe(String)}
+     */
+    String upload(InputStream media, long contentLength) throws IOException;
+
+    /**
+     * Starts transcribing previously uploaded media. The future completes with the transcript
+     * text, or null if the backend found no speech.
+     */
+    CompletableFuture<String> transcribe(String mediaReference);
+
+    /**
+     * Like {@link #transcribe(String)} but keeps word timings where the backend provides them.
+     */
+    default CompletableFuture<TranscriptResult> transcribeDetailed(String mediaReference) {
+        return transcribe(mediaReference).thenApply(text -> new TranscriptResult(text, List.of()));
+    }
+
+    /**
+     * Uploads and transcribes in one call, blocking until the transcript is ready.
+     */
+    default String uploadAndTranscribe(InputStream media, long contentLength) throws IOException {
+        return await(transcribe(upload(media, contentLength)));
+    }
+
+    /**
+     * Blocks for a transcription future, unwrapping its failure into an IOException.
+     */
+    static <T> T await(CompletableFuture<T> transcription) throws IOException {
+        try {
+            return transcription.get(AWAIT_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            transcription.cancel(false);
+            throw new IOException("Transcription did not finish within " + AWAIT_TIMEOUT, e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for transcription", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException ioException) {
+                throw ioException;
+            }
+            throw new IOException("Transcription failed: " + cause.getMessage(), cause);
+        }
+    }
+}
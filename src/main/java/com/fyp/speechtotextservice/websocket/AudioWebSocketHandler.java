@@ -1,53 +1,82 @@
 package com.fyp.speechtotextservice.websocket;
 
+import com.fyp.speechtotextservice.admission.AdmissionRejectedException;
+import com.fyp.speechtotextservice.live.AudioInputConverter;
+import com.fyp.speechtotextservice.live.AudioInputFormat;
+import com.fyp.speechtotextservice.live.LiveAudioOverflowException;
+import com.fyp.speechtotextservice.live.LiveSessionLimitExceededException;
 import com.fyp.speechtotextservice.service.LiveSpeechToTextService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 import org.springframework.web.socket.BinaryMessage;
 import org.springframework.web.socket.CloseStatus;
-import org.springframework.web.socket.TextMessage;
 import org.springframework.web.socket.WebSocketSession;
 import org.springframework.web.socket.handler.BinaryWebSocketHandler;
 
+import java.nio.ByteBuffer;
+
+@Slf4j
 @Component
 public class AudioWebSocketHandler extends BinaryWebSocketHandler {
 
-    private final LiveSpeechToTextService liveSpeechToTextService;
+    private static final String CONVERTER_ATTRIBUTE = AudioInputConverter.class.getName();
 
-    private WebSocketSession currentSession; // Store the session to send transcripts back
+    private final LiveSpeechToTextService liveSpeechToTextService;
+    private final int upstreamSampleRate;
 
-    public AudioWebSocketHandler(LiveSpeechToTextService liveSpeechToTextService) {
+    public AudioWebSocketHandler(LiveSpeechToTextService liveSpeechToTextService,
+                                 @Value("${live.audio.sample-rate:16000}") int upstreamSampleRate) {
         this.liveSpeechToTextService = liveSpeechToTextService;
+        this.upstreamSampleRate = upstreamSampleRate;
     }
 
     @Override
     public void afterConnectionEstablished(WebSocketSession session) throws Exception {
-        System.out.println("WebSocket connection established: " + session.getId());
-        currentSession = session;
-
-        liveSpeechToTextService.initWithCallback(transcript -> {
-            try {
-                if (currentSession != null && currentSession.isOpen()) {
-                    System.out.println("Sending transcript: " + transcript);
-                    currentSession.sendMessage(new TextMessage(transcript));
-                } else {
-                    System.out.println("Session closed or null, cannot send: " + transcript);
-                }
-            } catch (Exception e) {
-                System.err.println("Error sending transcript: " + e.getMessage());
-            }
-        });
+        log.debug("WebSocket connection established: {}", session.getId());
+        AudioInputFormat format;
+        try {
+            format = AudioInputFormat.fromUri(session.getUri(), upstreamSampleRate);
+        } catch (IllegalArgumentException e) {
+            log.warn("Rejecting WebSocket connection {}: {}", session.getId(), e.getMessage());
+            session.close(CloseStatus.NOT_ACCEPTABLE.withReason(e.getMessage()));
+            return;
+        }
+        // Clients already sending upstream PCM16 mono skip conversion entirely
+        if (!format.isUpstreamFormat(upstreamSampleRate)) {
+            session.getAttributes().put(CONVERTER_ATTRIBUTE, new AudioInputConverter(format, upstreamSampleRate));
+        }
+        try {
+            liveSpeechToTextService.openSession(session);
+        } catch (LiveSessionLimitExceededException e) {
+            log.warn("Rejecting WebSocket connection {}: {}", session.getId(), e.getMessage());
+            session.close(CloseStatus.SERVICE_OVERLOAD.withReason("Too many live sessions"));
+        } catch (AdmissionRejectedException e) {
+            // WebSocket close frames have no Retry-After, so the hint goes in the reason
+            log.warn("Rejecting WebSocket connection {}: {}", session.getId(), e.getMessage());
+            session.close(CloseStatus.SERVICE_OVERLOAD.withReason(
+                    "Try again in " + e.getRetryAfterSeconds() + " s"));
+        }
     }
 
     @Override
-    protected void handleBinaryMessage(WebSocketSession session, BinaryMessage message) {
-        byte[] pcmAudio = message.getPayload().array();
-//        System.out.println("Received PCM audio chunk of size: " + pcmAudio.length);
-        liveSpeechToTextService.sendAudio(pcmAudio);
+    protected void handleBinaryMessage(WebSocketSession session, BinaryMessage message) throws Exception {
+        // Copied into pooled frames; a slow upstream fills the session's buffer, not this thread
+        ByteBuffer audio = message.getPayload();
+        if (session.getAttributes().get(CONVERTER_ATTRIBUTE) instanceof AudioInputConverter converter) {
+            audio = converter.convert(audio);
+        }
+        try {
+            liveSpeechToTextService.sendAudio(session.getId(), audio);
+        } catch (LiveAudioOverflowException e) {
+            log.warn("Closing WebSocket connection {}: {}", session.getId(), e.getMessage());
+            session.close(CloseStatus.SERVICE_OVERLOAD.withReason("Audio backlog exceeded"));
+        }
     }
 
     @Override
     public void afterConnectionClosed(WebSocketSession session, CloseStatus status) throws Exception {
-        System.out.println("WebSocket connection closed: " + session.getId());
-        currentSession = null;
+        log.debug("WebSocket connection closed: {}", session.getId());
+        liveSpeechToTextService.closeSession(session.getId());
     }
 }